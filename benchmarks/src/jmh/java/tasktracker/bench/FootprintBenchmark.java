@@ -0,0 +1,80 @@
+package tasktracker.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap retained by a loaded 1M-task JSON store. "legacy" parses it into
+ * {@link LegacyTask}, one String per field as Task held them before;
+ * "task" loads it the way the tracker does.
+ *
+ * Each operation loads the store once, and the retained:bytesPerTask
+ * counter is the used heap after a full GC, less the heap in use before the
+ * load, divided by the task count. The time score includes those GCs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FootprintBenchmark {
+    private static final int SIZE = 1_000_000;
+
+    @Param({"legacy", "task"})
+    String model;
+
+    private Path dir;
+    private Path store;
+
+    /** Reported next to the score. JMH sums it over the measurement iterations, so each adds its share. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Retained {
+        public double bytesPerTask;
+        private int iterations;
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkParams params) {
+            iterations = params.getMeasurement().getCount();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("task-tracker-footprint");
+        store = dir.resolve("tasks.json");
+        StoreGenerator.writeJson(store, SIZE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(store);
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public List<?> retained(Retained retained) throws IOException {
+        long before = usedHeap();
+        List<?> tasks = model.equals("legacy")
+                ? LegacyJsonParser.parseTasksFromJson(Files.readString(store), LegacyTask::new)
+                : Tracker.load(store);
+        if (tasks.size() != SIZE) {
+            throw new IllegalStateException(model + " loaded " + tasks.size() + " of " + SIZE + " tasks");
+        }
+        retained.bytesPerTask = (double) (usedHeap() - before) / SIZE / retained.iterations;
+        return tasks;
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        memory.gc();
+        memory.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,48 @@
+package tasktracker.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a tasks.json document already in memory, on one thread: the
+ * original regex-split parser ("legacy") against the single-pass reader
+ * that replaced it ("reader"). Both build a Task per object. File I/O and
+ * the parallel chunked loader are left to StoreBenchmark.load.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JsonParseBenchmark {
+    @Param({"1000", "100000"})
+    int size;
+
+    @Param({"legacy", "reader"})
+    String parser;
+
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path file = Files.createTempFile("task-tracker-parse", ".json");
+        try {
+            StoreGenerator.writeJson(file, size);
+            json = Files.readString(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    public List<?> parse() {
+        List<?> tasks = parser.equals("legacy") ? LegacyJsonParser.parseTasksFromJson(json, Tracker::newTask) : Tracker.parseJson(json);
+        if (tasks.size() != size) {
+            throw new IllegalStateException(parser + " parsed " + tasks.size() + " of " + size + " tasks");
+        }
+        return tasks;
+    }
+}
@@ -0,0 +1,127 @@
+package tasktracker.bench;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The regex-split tasks.json parser the tracker used before its single-pass
+ * reader, kept verbatim as the "before" side of {@link JsonParseBenchmark}
+ * and {@link FootprintBenchmark}, apart from the factory that builds each task.
+ * It drops every quote from values, so escaped quotes do not round-trip.
+ */
+final class LegacyJsonParser {
+    /** Builds a task from its text fields, e.g. {@link Tracker#newTask} or {@link LegacyTask#LegacyTask}. */
+    interface TaskFactory<T> {
+        T create(int id, String description, String status, String priority, String createdAt, String updatedAt);
+    }
+
+    private LegacyJsonParser() {
+    }
+
+    static <T> List<T> parseTasksFromJson(String json, TaskFactory<T> factory) {
+        List<T> tasks = new ArrayList<>();
+
+        // Remove outer brackets and whitespace
+        json = json.trim();
+        if (json.startsWith("[")) {
+            json = json.substring(1);
+        }
+        if (json.endsWith("]")) {
+            json = json.substring(0, json.length() - 1);
+        }
+
+        if (json.trim().isEmpty()) {
+            return tasks;
+        }
+
+        // Split by task objects (looking for },{ pattern)
+        String[] taskStrings = json.split("(?<=\\}),\\s*(?=\\{)");
+
+        for (String taskString : taskStrings) {
+            taskString = taskString.trim();
+            if (taskString.isEmpty()) continue;
+
+            // Ensure the task string is properly wrapped with braces
+            if (!taskString.startsWith("{")) {
+                taskString = "{" + taskString;
+            }
+            if (!taskString.endsWith("}")) {
+                taskString = taskString + "}";
+            }
+
+            T task = parseTaskFromJson(taskString, factory);
+            if (task != null) {
+                tasks.add(task);
+            }
+        }
+
+        return tasks;
+    }
+
+    private static <T> T parseTaskFromJson(String json, TaskFactory<T> factory) {
+        try {
+            Map<String, String> values = new HashMap<>();
+
+            // Remove braces
+            json = json.trim();
+            if (json.startsWith("{")) json = json.substring(1);
+            if (json.endsWith("}")) json = json.substring(0, json.length() - 1);
+
+            // Split by commas, but be careful with commas inside quoted strings
+            List<String> pairs = splitJsonPairs(json);
+
+            for (String pair : pairs) {
+                String[] keyValue = pair.split(":", 2);
+                if (keyValue.length == 2) {
+                    String key = keyValue[0].trim().replace("\"", "");
+                    String value = keyValue[1].trim().replace("\"", "");
+                    values.put(key, value);
+                }
+            }
+
+            int id = Integer.parseInt(values.get("id"));
+            String description = values.get("description");
+            String status = values.get("status");
+            String priority = values.getOrDefault("priority", "medium");
+            String createdAt = values.get("createdAt");
+            String updatedAt = values.get("updatedAt");
+
+            return factory.create(id, description, status, priority, createdAt, updatedAt);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static List<String> splitJsonPairs(String json) {
+        List<String> pairs = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inQuotes = false;
+        int braceCount = 0;
+
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+
+            if (c == '"' && (i == 0 || json.charAt(i - 1) != '\\')) {
+                inQuotes = !inQuotes;
+            } else if (c == '{' && !inQuotes) {
+                braceCount++;
+            } else if (c == '}' && !inQuotes) {
+                braceCount--;
+            } else if (c == ',' && !inQuotes && braceCount == 0) {
+                pairs.add(current.toString().trim());
+                current = new StringBuilder();
+                continue;
+            }
+
+            current.append(c);
+        }
+
+        if (!current.isEmpty()) {
+            pairs.add(current.toString().trim());
+        }
+
+        return pairs;
+    }
+}
@@ -0,0 +1,23 @@
+package tasktracker.bench;
+
+/**
+ * The fields of Task before it held enums and epoch seconds: one String per
+ * text field, as parsed. The "before" side of {@link FootprintBenchmark}.
+ */
+final class LegacyTask {
+    final int id;
+    final String description;
+    final String status;
+    final String priority;
+    final String createdAt;
+    final String updatedAt;
+
+    LegacyTask(int id, String description, String status, String priority, String createdAt, String updatedAt) {
+        this.id = id;
+        this.description = description;
+        this.status = status;
+        this.priority = priority;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+}
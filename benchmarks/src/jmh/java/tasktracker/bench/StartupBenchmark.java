@@ -0,0 +1,100 @@
+package tasktracker.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end latency of one-shot commands: each operation starts the
+ * application jar in a fresh JVM against a 1k-task store and waits for it to
+ * exit, the way the tracker is used from a shell. "appcds" adds the class-data
+ * archive that `gradle build` writes next to the jar.
+ *
+ * The build passes the jar, archive and java executable as the system
+ * properties tasktracker.jar, tasktracker.jsa and tasktracker.java.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StartupBenchmark {
+    private static final int SIZE = 1000;
+
+    @Param({"jar", "appcds"})
+    String launch;
+
+    private Path dir;
+    private List<String> commandLine;
+    private int adds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("task-tracker-startup");
+        Path store = dir.resolve("tasks.json");
+        StoreGenerator.writeJson(store, SIZE);
+
+        commandLine = new ArrayList<>();
+        commandLine.add(property("tasktracker.java"));
+        if (launch.equals("appcds")) {
+            commandLine.add("-XX:SharedArchiveFile=" + property("tasktracker.jsa"));
+        }
+        commandLine.addAll(List.of("-jar", property("tasktracker.jar"), "--store", store.toString()));
+    }
+
+    /** Folds the adds of the last iteration into the snapshot, so every iteration starts from an empty log. */
+    @TearDown(Level.Iteration)
+    public void compact() throws IOException, InterruptedException {
+        if (adds > 0) {
+            run("compact");
+            adds = 0;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public int add() throws IOException, InterruptedException {
+        adds++;
+        return run("add", "Startup task " + adds);
+    }
+
+    @Benchmark
+    public int list() throws IOException, InterruptedException {
+        return run("list");
+    }
+
+    private int run(String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(commandLine);
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        int exit = process.waitFor();
+        if (exit != 0) {
+            throw new IllegalStateException(String.join(" ", command) + " exited with " + exit);
+        }
+        return exit;
+    }
+
+    private static String property(String name) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            throw new IllegalStateException("System property " + name + " is not set; run through gradle :benchmarks:jmh");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,107 @@
+package tasktracker.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Store operations against generated stores of each size and format. The
+ * list and mutate benchmarks run the same code path as the command line, minus
+ * JVM startup; their console output is discarded.
+ *
+ * Run with {@code gradle :benchmarks:jmh}; the GC profiler adds allocation
+ * rates (gc.alloc.rate.norm is bytes per operation).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class StoreBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    @Param({"json", "ttb"})
+    String format;
+
+    private Path dir;
+    private Path store;
+    private Path saveTarget;
+    private List<?> tasks;
+    private PrintStream stdout;
+    private int mutations;
+    private boolean mutated;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("task-tracker-bench");
+        Path json = dir.resolve("tasks.json");
+        StoreGenerator.writeJson(json, size);
+
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        store = json;
+        if (format.equals("ttb")) {
+            store = dir.resolve("tasks.ttb");
+            Tracker.run(json, "export", store.toString());
+        }
+        saveTarget = dir.resolve("saved." + format);
+        tasks = Tracker.load(store);
+    }
+
+    /** Folds the mutations of the last iteration into the snapshot, so every iteration starts from an empty log. */
+    @TearDown(Level.Iteration)
+    public void compact() {
+        if (mutated) {
+            Tracker.run(store, "compact");
+            mutated = false;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.setOut(stdout);
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<?> load() {
+        return Tracker.load(store);
+    }
+
+    @Benchmark
+    public void save() {
+        Tracker.save(saveTarget, tasks, size + 1);
+    }
+
+    /**
+     * Changes the priority of one task. A .ttb store patches the task's record
+     * in place; a JSON store appends a synced record to the change log.
+     */
+    @Benchmark
+    public void mutate() {
+        int id = 1 + (int) ((mutations * 7919L) % size);
+        Tracker.run(store, "priority", Integer.toString(id), (mutations & 1) == 0 ? "high" : "low");
+        mutations++;
+        mutated = true;
+    }
+
+    @Benchmark
+    public void listFiltered() {
+        Tracker.run(store, "list", "in-progress", "high");
+    }
+
+    @Benchmark
+    public void listSortedByPriority() {
+        Tracker.run(store, "list", "--sort-priority");
+    }
+}
@@ -0,0 +1,57 @@
+package tasktracker.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+/**
+ * Writes synthetic tasks.json stores in the layout the tracker itself writes.
+ * Output is deterministic for a given size.
+ */
+final class StoreGenerator {
+    private static final String[] STATUSES = {"todo", "in-progress", "done"};
+    private static final String[] PRIORITIES = {"low", "medium", "high"};
+    private static final String[] WORDS = {
+            "review", "deploy", "fix", "report", "invoice", "meeting", "draft", "update",
+            "client", "backlog", "release", "budget", "email", "schedule", "test", "docs"
+    };
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private StoreGenerator() {
+    }
+
+    static void writeJson(Path path, int size) throws IOException {
+        Random random = new Random(size);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 9, 0);
+
+        try (BufferedWriter out = Files.newBufferedWriter(path)) {
+            out.write("[\n");
+            for (int id = 1; id <= size; id++) {
+                LocalDateTime created = start.plusSeconds(id * 37L);
+                LocalDateTime updated = created.plusSeconds(random.nextInt(90 * 86400));
+
+                StringBuilder description = new StringBuilder();
+                int words = 3 + random.nextInt(6);
+                for (int w = 0; w < words; w++) {
+                    if (w > 0) description.append(' ');
+                    description.append(WORDS[random.nextInt(WORDS.length)]);
+                }
+                description.append(" #").append(id);
+
+                out.write("  {\n");
+                out.write("    \"id\": " + id + ",\n");
+                out.write("    \"description\": \"" + description + "\",\n");
+                out.write("    \"status\": \"" + STATUSES[random.nextInt(STATUSES.length)] + "\",\n");
+                out.write("    \"priority\": \"" + PRIORITIES[random.nextInt(PRIORITIES.length)] + "\",\n");
+                out.write("    \"createdAt\": \"" + created.format(FORMAT) + "\",\n");
+                out.write("    \"updatedAt\": \"" + updated.format(FORMAT) + "\"\n");
+                out.write(id < size ? "  },\n" : "  }\n");
+            }
+            out.write("]");
+        }
+    }
+}
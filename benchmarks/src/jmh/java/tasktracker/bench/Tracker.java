@@ -0,0 +1,99 @@
+package tasktracker.bench;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Entry points of the tracker, resolved by name. The tracker's classes live in
+ * the unnamed package, which JMH does not allow for benchmarks and which code
+ * in a named package cannot import.
+ */
+final class Tracker {
+    private static final MethodHandle MAIN;
+    private static final MethodHandle READ_SNAPSHOT;
+    private static final MethodHandle WRITE_SNAPSHOT;
+    private static final MethodHandle NEW_JSON_READER;
+    private static final MethodHandle READ_ALL;
+    private static final MethodHandle NEW_TASK;
+
+    static {
+        try {
+            Class<?> tracker = Class.forName("TaskTracker");
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MAIN = lookup.findStatic(tracker, "main", MethodType.methodType(void.class, String[].class));
+            READ_SNAPSHOT = lookup.unreflect(accessible(tracker.getDeclaredMethod("readSnapshot", Path.class)));
+            WRITE_SNAPSHOT = lookup.unreflect(accessible(
+                    tracker.getDeclaredMethod("writeSnapshot", Path.class, List.class, int.class)));
+            Class<?> reader = Class.forName("TaskJsonReader");
+            NEW_JSON_READER = lookup.findConstructor(reader, MethodType.methodType(void.class, Reader.class));
+            READ_ALL = lookup.findVirtual(reader, "readAll", MethodType.methodType(List.class));
+            NEW_TASK = lookup.findConstructor(Class.forName("Task"), MethodType.methodType(void.class,
+                    int.class, String.class, String.class, String.class, String.class, String.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Tracker() {
+    }
+
+    /** Runs a command line against the store, as {@code java TaskTracker --store <store> args...} would. */
+    static void run(Path store, String... args) {
+        String[] argv = new String[args.length + 2];
+        argv[0] = "--store";
+        argv[1] = store.toString();
+        System.arraycopy(args, 0, argv, 2, args.length);
+        try {
+            MAIN.invoke(argv);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Reads every task in the snapshot, ignoring any change log. */
+    static List<?> load(Path store) {
+        try {
+            return (List<?>) READ_SNAPSHOT.invoke(store);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Writes tasks returned by {@link #load} as a snapshot in the format the path's extension selects. */
+    static void save(Path store, List<?> tasks, int nextId) {
+        try {
+            WRITE_SNAPSHOT.invoke(store, tasks, nextId);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Parses a tasks.json document held in memory with the single-pass reader, on the calling thread. */
+    static List<?> parseJson(String json) {
+        try {
+            return (List<?>) READ_ALL.invoke(NEW_JSON_READER.invoke(new StringReader(json)));
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Builds a task from text fields, as the snapshot parsers do. */
+    static Object newTask(int id, String description, String status, String priority, String createdAt, String updatedAt) {
+        try {
+            return NEW_TASK.invoke(id, description, status, priority, createdAt, updatedAt);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Method accessible(Method method) {
+        method.setAccessible(true);
+        return method;
+    }
+}
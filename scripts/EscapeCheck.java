@@ -0,0 +1,124 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Regression check for JSON escapes in task descriptions.
+ *
+ * The original parser split the snapshot on quotes and commas, so a
+ * description holding `"` or `\` came back truncated or with stray
+ * backslashes. This adds such descriptions, compacts them into tasks.json
+ * and reads them back through the tracker. It also loads a hand-written
+ * snapshot using escapes other tools emit (an escaped slash, unicode escapes,
+ * a backslash just before the closing quote) and checks each decodes to the
+ * expected text.
+ *
+ *   java scripts/EscapeCheck.java build/libs/task-tracker.jar
+ *
+ * `gradle check` runs it with the toolchain JDK. Exits non-zero on failure.
+ */
+public class EscapeCheck {
+    private static final List<String> ROUND_TRIP = List.of(
+            "say \"hi\"",
+            "\"quoted at both ends\"",
+            "C:\\temp\\new",
+            "ends with a backslash \\",
+            "mixed \\\" and \", commas, {braces} and [brackets]",
+            "tab\there");
+
+    private static final String HAND_WRITTEN = """
+            [
+              {"id": 1, "description": "slash \\/ and \\u0041\\u00e9", "status": "todo", "priority": "low",
+               "createdAt": "2024-01-02 03:04:05", "updatedAt": "2024-01-02 03:04:05"},
+              {"description": "trailing \\\\", "id": 2, "status": "done", "priority": "high",
+               "createdAt": "2024-01-02 03:04:05", "updatedAt": "2024-01-02 03:04:05"},
+              {"id": 3, "description": "\\"\\\\\\"\\"", "status": "in-progress", "priority": "medium",
+               "createdAt": "2024-01-02 03:04:05", "updatedAt": "2024-01-02 03:04:05"}
+            ]
+            """;
+
+    private static final List<String> HAND_WRITTEN_DECODED = List.of(
+            "slash / and A\u00e9",
+            "trailing \\",
+            "\"\\\"\"");
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java scripts/EscapeCheck.java <task-tracker.jar>");
+            System.exit(2);
+        }
+        Path jar = Path.of(args[0]).toAbsolutePath();
+        List<String> problems = new ArrayList<>();
+
+        Path dir = Files.createTempDirectory("task-tracker-escapes");
+        try {
+            Path store = dir.resolve("tasks.json");
+            for (String description : ROUND_TRIP) {
+                tracker(jar, store, problems, "add", description);
+            }
+            tracker(jar, store, problems, "compact");
+            // A second compact parses the snapshot the first one wrote
+            tracker(jar, store, problems, "compact");
+            for (int i = 0; i < ROUND_TRIP.size(); i++) {
+                expect(jar, store, i + 1, ROUND_TRIP.get(i), problems);
+            }
+
+            Path written = dir.resolve("written.json");
+            Files.writeString(written, HAND_WRITTEN);
+            for (int i = 0; i < HAND_WRITTEN_DECODED.size(); i++) {
+                expect(jar, written, i + 1, HAND_WRITTEN_DECODED.get(i), problems);
+            }
+        } finally {
+            delete(dir);
+        }
+
+        if (problems.isEmpty()) {
+            System.out.println("escapes: " + (ROUND_TRIP.size() + HAND_WRITTEN_DECODED.size()) + " descriptions decoded intact");
+            System.exit(0);
+        }
+        System.out.println("escapes: FAILED");
+        for (String problem : problems) {
+            System.out.println("  " + problem);
+        }
+        System.exit(1);
+    }
+
+    private static void expect(Path jar, Path store, int id, String description, List<String> problems) throws Exception {
+        String output = tracker(jar, store, problems, "show", String.valueOf(id));
+        String prefix = "  Description: ";
+        for (String line : output.split("\n")) {
+            if (line.startsWith(prefix)) {
+                String found = line.substring(prefix.length());
+                if (!found.equals(description)) {
+                    problems.add(store.getFileName() + " task " + id + ": expected [" + description + "], got [" + found + "]");
+                }
+                return;
+            }
+        }
+        problems.add(store.getFileName() + " task " + id + ": no description in output");
+    }
+
+    private static String tracker(Path jar, Path store, List<String> problems, String... command) throws Exception {
+        List<String> line = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Dfile.encoding=UTF-8", "-Dstdout.encoding=UTF-8",
+                "-jar", jar.toString(), "--store", store.toString()));
+        line.addAll(List.of(command));
+        Process process = new ProcessBuilder(line).start();
+        String output = new String(process.getInputStream().readAllBytes(), "UTF-8");
+        String errors = new String(process.getErrorStream().readAllBytes());
+        if (process.waitFor() != 0 || !errors.isBlank()) {
+            problems.add(String.join(" ", command) + " failed: " + errors.strip());
+        }
+        return output;
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (var files = Files.walk(dir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,316 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Multi-process check that concurrent writers never lose a task.
+ *
+ * Starts N `add` processes at once against one store, with `compact`
+ * processes racing them to rewrite the snapshot, for both a JSON and a
+ * binary store. Afterwards the store must hold exactly IDs 1..N with the
+ * descriptions that were added, and tasks.json must parse as strict JSON.
+ * It is parsed here rather than by the tracker, so a snapshot the tracker
+ * would tolerate but other tools would not still fails the check.
+ *
+ *   java scripts/StressAdd.java build/libs/task-tracker.jar [processes]
+ *
+ * `gradle check` runs it with the toolchain JDK. Exits non-zero on failure.
+ */
+public class StressAdd {
+    private static final int COMPACTORS = 4;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java scripts/StressAdd.java <task-tracker.jar> [processes]");
+            System.exit(2);
+        }
+        Path jar = Path.of(args[0]).toAbsolutePath();
+        int processes = args.length > 1 ? Integer.parseInt(args[1]) : 24;
+
+        boolean ok = true;
+        for (String extension : List.of(".json", ".ttb")) {
+            Path dir = Files.createTempDirectory("task-tracker-stress");
+            try {
+                ok &= run(jar, dir.resolve("tasks" + extension), processes);
+            } finally {
+                delete(dir);
+            }
+        }
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static boolean run(Path jar, Path store, int processes) throws Exception {
+        List<Process> started = new ArrayList<>();
+        for (int i = 1; i <= processes; i++) {
+            started.add(tracker(jar, store, "add", "stress " + i));
+            if (i % (processes / COMPACTORS + 1) == 0) {
+                started.add(tracker(jar, store, "compact"));
+            }
+        }
+        List<String> problems = new ArrayList<>();
+        for (Process process : started) {
+            String errors = new String(process.getErrorStream().readAllBytes());
+            if (process.waitFor() != 0 || !errors.isBlank()) {
+                problems.add("process failed: " + errors.strip());
+            }
+        }
+
+        // Fold the log into the snapshot, then read it back as JSON
+        Path json = store.resolveSibling("check.json");
+        if (store.toString().endsWith(".json")) {
+            finish(tracker(jar, store, "compact"), problems);
+            json = store;
+        } else {
+            finish(tracker(jar, store, "export", json.toString()), problems);
+        }
+
+        Map<Integer, String> found = new TreeMap<>();
+        try {
+            Object parsed = new JsonParser(Files.readString(json)).parseDocument();
+            for (Object element : (List<?>) parsed) {
+                Map<?, ?> task = (Map<?, ?>) element;
+                int id = ((Number) task.get("id")).intValue();
+                if (found.put(id, (String) task.get("description")) != null) {
+                    problems.add("duplicate ID " + id);
+                }
+            }
+        } catch (RuntimeException e) {
+            problems.add("snapshot is not valid JSON: " + e.getMessage());
+        }
+        for (int id = 1; id <= processes; id++) {
+            if (!found.containsKey(id)) {
+                problems.add("missing ID " + id);
+            }
+        }
+        Set<String> descriptions = new HashSet<>(found.values());
+        for (int i = 1; i <= processes; i++) {
+            if (!descriptions.contains("stress " + i)) {
+                problems.add("missing task 'stress " + i + "'");
+            }
+        }
+        if (found.size() != processes) {
+            problems.add("expected " + processes + " tasks, found " + found.size());
+        }
+
+        String name = store.getFileName().toString();
+        if (problems.isEmpty()) {
+            System.out.println(name + ": " + processes + " concurrent adds, all " + processes + " tasks present");
+            return true;
+        }
+        System.out.println(name + ": FAILED");
+        for (String problem : problems) {
+            System.out.println("  " + problem);
+        }
+        return false;
+    }
+
+    private static Process tracker(Path jar, Path store, String... command) throws IOException {
+        List<String> line = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-jar", jar.toString(), "--store", store.toString()));
+        line.addAll(List.of(command));
+        return new ProcessBuilder(line).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+    }
+
+    private static void finish(Process process, List<String> problems) throws Exception {
+        String errors = new String(process.getErrorStream().readAllBytes());
+        if (process.waitFor() != 0 || !errors.isBlank()) {
+            problems.add("final step failed: " + errors.strip());
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (var files = Files.walk(dir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /** Strict RFC 8259 parser into maps, lists, strings, numbers, booleans and null. */
+    private static class JsonParser {
+        private final String text;
+        private int pos;
+
+        JsonParser(String text) {
+            this.text = text;
+        }
+
+        Object parseDocument() {
+            Object value = parseValue();
+            skipWhitespace();
+            if (pos != text.length()) {
+                throw error("trailing content");
+            }
+            return value;
+        }
+
+        private Object parseValue() {
+            skipWhitespace();
+            if (pos >= text.length()) {
+                throw error("unexpected end");
+            }
+            char c = text.charAt(pos);
+            switch (c) {
+                case '{':
+                    return parseObject();
+                case '[':
+                    return parseArray();
+                case '"':
+                    return parseString();
+                case 't':
+                    return literal("true", Boolean.TRUE);
+                case 'f':
+                    return literal("false", Boolean.FALSE);
+                case 'n':
+                    return literal("null", null);
+                default:
+                    if (c == '-' || (c >= '0' && c <= '9')) {
+                        return parseNumber();
+                    }
+                    throw error("unexpected '" + c + "'");
+            }
+        }
+
+        private Map<String, Object> parseObject() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            pos++;
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                if (peek() != '"') {
+                    throw error("expected a key");
+                }
+                String key = parseString();
+                skipWhitespace();
+                expect(':');
+                object.put(key, parseValue());
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                } else {
+                    expect('}');
+                    return object;
+                }
+            }
+        }
+
+        private List<Object> parseArray() {
+            List<Object> array = new ArrayList<>();
+            pos++;
+            skipWhitespace();
+            if (peek() == ']') {
+                pos++;
+                return array;
+            }
+            while (true) {
+                array.add(parseValue());
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                } else {
+                    expect(']');
+                    return array;
+                }
+            }
+        }
+
+        private String parseString() {
+            StringBuilder sb = new StringBuilder();
+            pos++;
+            while (true) {
+                if (pos >= text.length()) {
+                    throw error("unterminated string");
+                }
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                } else if (c < 0x20) {
+                    throw error("control character in string");
+                } else if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char escape = pos < text.length() ? text.charAt(pos++) : 0;
+                switch (escape) {
+                    case '"', '\\', '/' -> sb.append(escape);
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'u' -> {
+                        if (pos + 4 > text.length()) {
+                            throw error("short \\u escape");
+                        }
+                        sb.append((char) Integer.parseInt(text, pos, pos + 4, 16));
+                        pos += 4;
+                    }
+                    default -> throw error("bad escape");
+                }
+            }
+        }
+
+        private Number parseNumber() {
+            int start = pos;
+            if (peek() == '-') pos++;
+            if (peek() == '0') {
+                pos++;
+            } else if (!digits()) {
+                throw error("bad number");
+            }
+            boolean integral = true;
+            if (peek() == '.') {
+                pos++;
+                integral = false;
+                if (!digits()) throw error("bad fraction");
+            }
+            if (peek() == 'e' || peek() == 'E') {
+                pos++;
+                integral = false;
+                if (peek() == '+' || peek() == '-') pos++;
+                if (!digits()) throw error("bad exponent");
+            }
+            String number = text.substring(start, pos);
+            return integral ? (Number) Long.parseLong(number) : (Number) Double.parseDouble(number);
+        }
+
+        private boolean digits() {
+            int start = pos;
+            while (peek() >= '0' && peek() <= '9') pos++;
+            return pos > start;
+        }
+
+        private Object literal(String word, Object value) {
+            if (!text.startsWith(word, pos)) {
+                throw error("unexpected literal");
+            }
+            pos += word.length();
+            return value;
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw error("expected '" + c + "'");
+            }
+            pos++;
+        }
+
+        private char peek() {
+            return pos < text.length() ? text.charAt(pos) : 0;
+        }
+
+        private void skipWhitespace() {
+            while (pos < text.length() && " \t\r\n".indexOf(text.charAt(pos)) >= 0) pos++;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at offset " + pos);
+        }
+    }
+}
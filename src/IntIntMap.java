@@ -0,0 +1,166 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from int keys to non-negative int values.
+ *
+ * Used to map task IDs to record ordinals without boxing. The table can be
+ * written into a binary snapshot and probed there directly via {@link #get(ByteBuffer, int, int)}.
+ */
+public class IntIntMap {
+    public static final int MISSING = -1;
+
+    private int[] keys;
+    private int[] values; // MISSING marks a free slot
+    private int size;
+
+    public IntIntMap() {
+        this(16);
+    }
+
+    public IntIntMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /** Table capacity for the given number of keys: a power of two at most half full. */
+    public static int capacityFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(int key) {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; values[slot] != MISSING; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return MISSING;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != MISSING;
+    }
+
+    public void put(int key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Values must be non-negative: " + value);
+        }
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length << 1);
+        }
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != MISSING) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    /** Removes the key, returning its value or MISSING. Uses backward-shift deletion. */
+    public int remove(int key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != MISSING && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (values[slot] == MISSING) {
+            return MISSING;
+        }
+
+        int removed = values[slot];
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (values[next] != MISSING) {
+            int home = hash(keys[next]) & mask;
+            // Move the entry back if its home slot does not lie in (gap, next]
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[gap] = MISSING;
+        size--;
+        return removed;
+    }
+
+    /** Returns the keys in ascending order. */
+    public int[] keys() {
+        int[] result = new int[size];
+        int n = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (values[slot] != MISSING) {
+                result[n++] = keys[slot];
+            }
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    public int sizeInBytes() {
+        return 4 + keys.length * 8;
+    }
+
+    /** Writes the table as its capacity followed by key/value pairs. */
+    public void write(ByteBuffer buffer) {
+        buffer.putInt(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            buffer.putInt(keys[i]);
+            buffer.putInt(values[i]);
+        }
+    }
+
+    /** Looks up a key in a table written by {@link #write(ByteBuffer)} at the given offset. */
+    public static int get(ByteBuffer buffer, int offset, int key) {
+        int capacity = buffer.getInt(offset);
+        int mask = capacity - 1;
+        int table = offset + 4;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int value = buffer.getInt(table + slot * 8 + 4);
+            if (value == MISSING) {
+                return MISSING;
+            }
+            if (buffer.getInt(table + slot * 8) == key) {
+                return value;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != MISSING) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
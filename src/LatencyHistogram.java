@@ -0,0 +1,60 @@
+/**
+ * Histogram of durations in nanoseconds with logarithmic buckets.
+ *
+ * As in HdrHistogram, each power of two is split into {@link #SUB_BUCKETS}
+ * linear sub-buckets, so any recorded value is known to within 12.5% while
+ * the whole range of a long fits in under 500 counters. Recording is a few
+ * shifts and an increment.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int ROWS = 64 - SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[ROWS * SUB_BUCKETS];
+    private long count;
+    private long sum;
+
+    public synchronized void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts[bucket(value)]++;
+        count++;
+        sum += value;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getSum() {
+        return sum;
+    }
+
+    /** Number of values whose bucket lies entirely at or below the given value. */
+    public synchronized long countAtOrBelow(long value) {
+        long total = 0;
+        for (int i = 0; i < counts.length && upperBound(i) <= value; i++) {
+            total += counts[i];
+        }
+        return total;
+    }
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(int bucket) {
+        int row = bucket / SUB_BUCKETS;
+        if (row == 0) {
+            return bucket;
+        }
+        int shift = row - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,176 @@
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide latency histograms and counters.
+ *
+ * Code paths wrap each phase in {@link #time} and report sizes through
+ * {@link #count}. Both always record, since a pair of nanoTime calls is noise
+ * next to the file I/O being measured. With `--timings` a command is also
+ * traced and its per-phase breakdown printed; `serve` periodically writes
+ * everything to "<store>.prom" in the Prometheus text format, where a
+ * node_exporter textfile collector or any other scraper can pick it up.
+ *
+ * Nesting and tracing assume commands run one at a time, as they do both
+ * from the command line and inside the daemon.
+ */
+public class Metrics {
+    /** Histogram bucket bounds exported to Prometheus, in seconds. */
+    private static final double[] EXPORT_BOUNDS = {
+            0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
+    private static final Map<String, LatencyHistogram> TIMERS = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+
+    private static int depth;
+    private static Trace trace;
+
+    /** Starts timing a phase; close the returned stopwatch when the phase ends. */
+    public static Stopwatch time(String phase) {
+        return new Stopwatch(phase);
+    }
+
+    public static void count(String name, long delta) {
+        LongAdder counter = COUNTERS.get(name);
+        if (counter == null) {
+            COUNTERS.putIfAbsent(name, new LongAdder());
+            counter = COUNTERS.get(name);
+        }
+        counter.add(delta);
+        if (trace != null) {
+            trace.counts.merge(name, delta, Long::sum);
+        }
+    }
+
+    /** Records phases and counts from now on for {@link #endTrace}. */
+    public static void startTrace() {
+        trace = new Trace(depth);
+    }
+
+    /** Stops tracing and returns the breakdown, each phase indented under the one it ran in. */
+    public static String endTrace() {
+        Trace finished = trace;
+        trace = null;
+        if (finished == null) {
+            return "";
+        }
+
+        StringBuilder sb = new StringBuilder("Timings:\n");
+        for (TraceEntry entry : finished.entries.values()) {
+            String name = "  ".repeat(entry.depth + 1) + entry.phase;
+            sb.append(String.format("%-32s %6d calls %12.3f ms%n", name, entry.calls, entry.nanos / 1e6));
+        }
+        if (!finished.counts.isEmpty()) {
+            sb.append("Counts:");
+            finished.counts.forEach((name, value) -> sb.append(' ').append(name).append('=').append(value));
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** Writes every histogram and counter in the Prometheus text format, replacing the file atomically. */
+    public static void writePrometheus(Path path) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# HELP tasktracker_phase_seconds Time spent in each phase of a command.\n");
+        sb.append("# TYPE tasktracker_phase_seconds histogram\n");
+        for (String phase : new TreeSet<>(TIMERS.keySet())) {
+            LatencyHistogram histogram = TIMERS.get(phase);
+            String label = "phase=\"" + phase + "\"";
+            for (double bound : EXPORT_BOUNDS) {
+                sb.append("tasktracker_phase_seconds_bucket{").append(label).append(",le=\"").append(BigDecimal.valueOf(bound).stripTrailingZeros().toPlainString()).append("\"} ")
+                        .append(histogram.countAtOrBelow((long) (bound * 1e9))).append('\n');
+            }
+            sb.append("tasktracker_phase_seconds_bucket{").append(label).append(",le=\"+Inf\"} ")
+                    .append(histogram.getCount()).append('\n');
+            sb.append("tasktracker_phase_seconds_sum{").append(label).append("} ")
+                    .append(histogram.getSum() / 1e9).append('\n');
+            sb.append("tasktracker_phase_seconds_count{").append(label).append("} ")
+                    .append(histogram.getCount()).append('\n');
+        }
+        for (String name : new TreeSet<>(COUNTERS.keySet())) {
+            String metric = "tasktracker_" + name.replace('.', '_') + "_total";
+            sb.append("# TYPE ").append(metric).append(" counter\n");
+            sb.append(metric).append(' ').append(COUNTERS.get(name).sum()).append('\n');
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.writeString(temp, sb);
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Rewrites the Prometheus file every interval on a daemon thread, for as long as the process runs. */
+    public static void exportPeriodically(Path path, long intervalMillis) {
+        Thread.ofPlatform().daemon().name("metrics-export").start(() -> {
+            while (true) {
+                try {
+                    writePrometheus(path);
+                    Thread.sleep(intervalMillis);
+                } catch (IOException e) {
+                    System.err.println("Warning: Could not write metrics to " + path + ": " + e.getMessage());
+                    return;
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+    }
+
+    /** Times one phase from creation until {@link #close}. */
+    public static class Stopwatch implements AutoCloseable {
+        private final String phase;
+        private final TraceEntry entry;
+        private final long start;
+
+        private Stopwatch(String phase) {
+            this.phase = phase;
+            this.entry = trace != null ? trace.entries.computeIfAbsent(depth + "/" + phase,
+                    key -> new TraceEntry(phase, depth - trace.baseDepth)) : null;
+            depth++;
+            this.start = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            long elapsed = System.nanoTime() - start;
+            depth--;
+            LatencyHistogram histogram = TIMERS.get(phase);
+            if (histogram == null) {
+                TIMERS.putIfAbsent(phase, new LatencyHistogram());
+                histogram = TIMERS.get(phase);
+            }
+            histogram.record(elapsed);
+            if (entry != null) {
+                entry.calls++;
+                entry.nanos += elapsed;
+            }
+        }
+    }
+
+    /** Phases in the order they first started, keyed by depth and name. */
+    private static class Trace {
+        final int baseDepth; // nonzero inside the daemon, whose serve command never ends
+        final Map<String, TraceEntry> entries = new LinkedHashMap<>();
+        final Map<String, Long> counts = new LinkedHashMap<>();
+
+        Trace(int baseDepth) {
+            this.baseDepth = baseDepth;
+        }
+    }
+
+    private static class TraceEntry {
+        final String phase;
+        final int depth;
+        int calls;
+        long nanos;
+
+        TraceEntry(String phase, int depth) {
+            this.phase = phase;
+            this.depth = depth;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Task priority. The numeric value doubles as the priority code in binary
+ * snapshots and orders priorities from least to most urgent.
+ */
+public enum Priority {
+    LOW("low", 1, "\u001B[32mLOW\u001B[0m"),
+    MEDIUM("medium", 2, "\u001B[33mMED\u001B[0m"),
+    HIGH("high", 3, "\u001B[31mHIGH\u001B[0m");
+
+    private static final Priority[] VALUES = values();
+    private static final Priority[] BY_VALUE = {null, LOW, MEDIUM, HIGH};
+
+    private final String name;
+    private final int value;
+    private final String display;
+
+    Priority(String name, int value, String display) {
+        this.name = name;
+        this.value = value;
+        this.display = display;
+    }
+
+    /** The lowercase name used on the command line and in stored files. */
+    public String getName() {
+        return name;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    /** Short colored label for terminal output. */
+    public String getDisplay() {
+        return display;
+    }
+
+    public static Priority fromValue(int value) {
+        return BY_VALUE[value];
+    }
+
+    /** Parses a stored or typed priority, ignoring case. Returns null if unknown. */
+    public static Priority parse(CharSequence text) {
+        for (Priority priority : VALUES) {
+            if (priority.name.contentEquals(text)) {
+                return priority;
+            }
+        }
+        String str = text.toString();
+        for (Priority priority : VALUES) {
+            if (priority.name.equalsIgnoreCase(str)) {
+                return priority;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,466 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * Inverted index from description tokens to the IDs of the tasks using them,
+ * kept next to the snapshot as "<snapshot>.idx".
+ *
+ * The file describes the snapshot it was built from, identified by that
+ * file's size and modification time, and is opened through a memory map: a
+ * lookup binary-searches the sorted term table and reads the posting lists
+ * in place. Mutations since the snapshot live in the change log, so callers
+ * re-check the tasks the log touches instead of the index being rewritten on
+ * every add; it is rebuilt whenever the snapshot is.
+ *
+ * For a JSON snapshot the index also records where each task's object sits
+ * in the file, so the tasks a search returns are decoded on their own
+ * instead of parsing the whole snapshot (see {@link #readTasks}). Each one
+ * is checked against the ID recorded for its offset, which catches a
+ * snapshot rewritten to the same size within the same millisecond.
+ *
+ * Header (32 bytes):
+ *   0  magic "TTX1"   4  version   8  term count   12 object count (JSON, version 2)
+ *   16 snapshot size (long)        24 snapshot modified millis (long)
+ * Term entry (16 bytes, sorted by term bytes):
+ *   0  term offset   4  term length   8  postings offset (in ints)   12 postings count
+ * The term bytes (UTF-8) and then the posting lists (ascending IDs) follow.
+ * Object entry (16 bytes, sorted by ID), after the posting lists:
+ *   0  task ID   4  object length in bytes   8  object offset in the snapshot (long)
+ */
+public class SearchIndex {
+    private static final int MAGIC = 0x54545831; // "TTX1"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int ENTRY_SIZE = 16;
+    private static final int OBJECT_ENTRY_SIZE = 16;
+
+    private final ByteBuffer buffer;
+    private final int termCount;
+    private final int termsOffset;
+    private final int postingsOffset;
+    private final int objectCount;
+    private final int objectsOffset;
+
+    private SearchIndex(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.termCount = buffer.getInt(8);
+        this.termsOffset = HEADER_SIZE + termCount * ENTRY_SIZE;
+        int lastEntry = HEADER_SIZE + (termCount - 1) * ENTRY_SIZE;
+        this.postingsOffset = termCount > 0 ? termsOffset + buffer.getInt(lastEntry) + buffer.getInt(lastEntry + 4) : termsOffset;
+        this.objectCount = buffer.getInt(12);
+        this.objectsOffset = termCount > 0 ? postingsOffset + (buffer.getInt(lastEntry + 8) + buffer.getInt(lastEntry + 12)) * 4 : postingsOffset;
+    }
+
+    public static Path pathFor(Path snapshotPath) {
+        return snapshotPath.resolveSibling(snapshotPath.getFileName() + ".idx");
+    }
+
+    /** Splits text into lowercase runs of letters and digits. */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Turns query words into index terms: each word is tokenized like a
+     * description, and a trailing '*' makes its last token a prefix term.
+     */
+    public static List<String> parseQuery(List<String> words) {
+        List<String> terms = new ArrayList<>();
+        for (String word : words) {
+            boolean prefix = word.endsWith("*");
+            List<String> tokens = tokenize(prefix ? word.substring(0, word.length() - 1) : word);
+            for (int i = 0; i < tokens.size(); i++) {
+                terms.add(prefix && i == tokens.size() - 1 ? tokens.get(i) + "*" : tokens.get(i));
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Returns true if the text contains every query term. A term ending in '*'
+     * matches any token it is a prefix of.
+     */
+    public static boolean matches(String text, List<String> terms) {
+        List<String> tokens = tokenize(text);
+        for (String term : terms) {
+            boolean prefix = term.endsWith("*");
+            String stem = prefix ? term.substring(0, term.length() - 1) : term;
+            boolean found = false;
+            for (String token : tokens) {
+                if (prefix ? token.startsWith(stem) : token.equals(stem)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the index for the given tasks and atomically replaces the one
+     * next to the snapshot. For a JSON snapshot the tasks must be in file
+     * order, as read or as just written.
+     */
+    public static void write(Path snapshotPath, List<Task> tasks) throws IOException {
+        Map<String, Postings> byTerm = new HashMap<>();
+        for (Task task : tasks) {
+            for (String token : new HashSet<>(tokenize(task.getDescription()))) {
+                byTerm.computeIfAbsent(token, Postings::new).add(task.getId());
+            }
+        }
+
+        Postings[] terms = byTerm.values().toArray(new Postings[0]);
+        Arrays.sort(terms, (a, b) -> Arrays.compareUnsigned(a.term, b.term));
+
+        // Object spans pair up with the tasks by position; a file the reader skipped objects of gets none
+        long[] spans = TaskBinaryFormat.isBinary(snapshotPath) ? new long[0] : TaskJsonLoader.objectSpans(snapshotPath);
+        int objects = spans.length / 2 == tasks.size() ? tasks.size() : 0;
+
+        long fileSize = HEADER_SIZE + (long) terms.length * ENTRY_SIZE + (long) objects * OBJECT_ENTRY_SIZE;
+        for (Postings postings : terms) {
+            fileSize += postings.term.length + postings.size * 4L;
+        }
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IOException("Search index would exceed 2 GB");
+        }
+
+        BasicFileAttributes snapshot = Files.readAttributes(snapshotPath, BasicFileAttributes.class);
+        ByteBuffer out = ByteBuffer.allocate((int) fileSize);
+        out.putInt(MAGIC).putInt(VERSION).putInt(terms.length).putInt(objects);
+        out.putLong(snapshot.size()).putLong(snapshot.lastModifiedTime().toMillis());
+
+        int termOffset = 0;
+        int postingOffset = 0;
+        for (Postings postings : terms) {
+            out.putInt(termOffset).putInt(postings.term.length).putInt(postingOffset).putInt(postings.size);
+            termOffset += postings.term.length;
+            postingOffset += postings.size;
+        }
+        for (Postings postings : terms) {
+            out.put(postings.term);
+        }
+        for (Postings postings : terms) {
+            Arrays.sort(postings.ids, 0, postings.size);
+            for (int i = 0; i < postings.size; i++) {
+                out.putInt(postings.ids[i]);
+            }
+        }
+        if (objects > 0) {
+            long[] byId = new long[objects]; // ID in the high half, ordinal in the low
+            for (int i = 0; i < objects; i++) {
+                byId[i] = (long) tasks.get(i).getId() << 32 | i;
+            }
+            Arrays.sort(byId);
+            for (long entry : byId) {
+                int ordinal = (int) entry;
+                long length = spans[ordinal * 2 + 1] - spans[ordinal * 2];
+                out.putInt((int) (entry >> 32)).putInt((int) Math.min(length, Integer.MAX_VALUE)).putLong(spans[ordinal * 2]);
+            }
+        }
+        out.flip();
+
+        // Searches build the index under a shared lock, so each writes a temp file of its own
+        Path path = pathFor(snapshotPath).toAbsolutePath();
+        Path temp = Files.createTempFile(path.getParent(), path.getFileName() + ".", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /** Opens the index for the snapshot, or returns null if it is missing or was built for another version of it. */
+    public static SearchIndex open(Path snapshotPath) throws IOException {
+        Path path = pathFor(snapshotPath);
+        if (!Files.exists(path) || !Files.exists(snapshotPath)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            BasicFileAttributes snapshot = Files.readAttributes(snapshotPath, BasicFileAttributes.class);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getLong(16) != snapshot.size()
+                    || buffer.getLong(24) != snapshot.lastModifiedTime().toMillis()) {
+                return null;
+            }
+            return new SearchIndex(buffer);
+        }
+    }
+
+    /**
+     * Points an index that was current for the snapshot at its new size and
+     * modification time, after a patch that left every description alone.
+     * An index built for some other version of the snapshot is left stale.
+     */
+    public static void restamp(Path snapshotPath, long oldSize, long oldModifiedMillis) throws IOException {
+        Path path = pathFor(snapshotPath);
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < HEADER_SIZE) {
+                return;
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                    || header.getLong(16) != oldSize || header.getLong(24) != oldModifiedMillis) {
+                return;
+            }
+            BasicFileAttributes snapshot = Files.readAttributes(snapshotPath, BasicFileAttributes.class);
+            ByteBuffer stamp = ByteBuffer.allocate(16).putLong(snapshot.size()).putLong(snapshot.lastModifiedTime().toMillis());
+            stamp.flip();
+            while (stamp.hasRemaining()) {
+                channel.write(stamp, 16 + stamp.position());
+            }
+        }
+    }
+
+    /** Number of tasks whose place in a JSON snapshot the index records; 0 for a binary one. */
+    public int objectCount() {
+        return objectCount;
+    }
+
+    /**
+     * Reads the tasks with the given IDs from the JSON snapshot the index was
+     * built for, decoding only their objects; IDs the index does not list
+     * are skipped. Returns null if the index records no objects, or if any
+     * object read no longer holds the task recorded for it.
+     */
+    public List<Task> readTasks(Path snapshotPath, int[] ids) throws IOException {
+        if (objectCount == 0) {
+            return null;
+        }
+
+        List<Integer> entries = new ArrayList<>(ids.length);
+        long total = 0;
+        for (int id : ids) {
+            int entry = findObject(id);
+            if (entry >= 0) {
+                entries.add(entry);
+                total += buffer.getInt(objectEntryOffset(entry) + 4) + 1L;
+            }
+        }
+        if (total > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        // The objects go one per line into a single document for one reader
+        ByteBuffer objects = ByteBuffer.allocate((int) total);
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            for (int entry : entries) {
+                int offset = objectEntryOffset(entry);
+                ByteBuffer object = objects.slice(objects.position(), buffer.getInt(offset + 4));
+                long position = buffer.getLong(offset + 8);
+                while (object.hasRemaining()) {
+                    if (channel.read(object, position + object.position()) <= 0) {
+                        return null; // the snapshot is shorter than the index says
+                    }
+                }
+                objects.position(objects.position() + object.capacity()).put((byte) '\n');
+            }
+        }
+
+        List<Task> tasks;
+        try (Reader in = new StringReader(new String(objects.array(), StandardCharsets.UTF_8))) {
+            tasks = new TaskJsonReader(in, true).readAll();
+        } catch (IOException e) {
+            return null;
+        }
+        if (tasks.size() != entries.size()) {
+            return null;
+        }
+        for (int i = 0; i < tasks.size(); i++) {
+            if (tasks.get(i).getId() != buffer.getInt(objectEntryOffset(entries.get(i)))) {
+                return null;
+            }
+        }
+        return tasks;
+    }
+
+    /** Object entry for the ID, or -1. */
+    private int findObject(int id) {
+        int low = 0;
+        int high = objectCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = buffer.getInt(objectEntryOffset(mid));
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int objectEntryOffset(int entry) {
+        return objectsOffset + entry * OBJECT_ENTRY_SIZE;
+    }
+
+    /** Returns the ascending IDs of tasks containing every term (see {@link #matches}). */
+    public int[] search(List<String> terms) {
+        int[] result = null;
+        for (String term : terms) {
+            int[] ids = term.endsWith("*") ? lookupPrefix(term.substring(0, term.length() - 1)) : lookupExact(term);
+            result = result == null ? ids : intersect(result, ids);
+            if (result.length == 0) {
+                break;
+            }
+        }
+        return result != null ? result : new int[0];
+    }
+
+    private int[] lookupExact(String term) {
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+        int entry = lowerBound(key);
+        return entry < termCount && compareTerm(entry, key, false) == 0 ? postings(entry) : new int[0];
+    }
+
+    private int[] lookupPrefix(String prefix) {
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        int first = lowerBound(key);
+        int last = first;
+        while (last < termCount && compareTerm(last, key, true) == 0) {
+            last++;
+        }
+        if (last - first == 1) {
+            return postings(first);
+        }
+
+        int total = 0;
+        for (int entry = first; entry < last; entry++) {
+            total += buffer.getInt(entryOffset(entry) + 12);
+        }
+        int[] ids = new int[total];
+        int n = 0;
+        for (int entry = first; entry < last; entry++) {
+            int[] part = postings(entry);
+            System.arraycopy(part, 0, ids, n, part.length);
+            n += part.length;
+        }
+        // A task with several tokens sharing the prefix is listed once per token
+        Arrays.sort(ids);
+        int unique = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                ids[unique++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, unique);
+    }
+
+    /** First entry whose term is not less than key. */
+    private int lowerBound(byte[] key) {
+        int low = 0;
+        int high = termCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareTerm(mid, key, false) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** Compares an entry's term with key as unsigned bytes; with prefix, only the first key.length bytes count. */
+    private int compareTerm(int entry, byte[] key, boolean prefix) {
+        int offset = termsOffset + buffer.getInt(entryOffset(entry));
+        int length = buffer.getInt(entryOffset(entry) + 4);
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Byte.compareUnsigned(buffer.get(offset + i), key[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        if (prefix && length >= key.length) {
+            return 0;
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private int[] postings(int entry) {
+        int offset = postingsOffset + buffer.getInt(entryOffset(entry) + 8) * 4;
+        int[] ids = new int[buffer.getInt(entryOffset(entry) + 12)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = buffer.getInt(offset + i * 4);
+        }
+        return ids;
+    }
+
+    private static int entryOffset(int entry) {
+        return HEADER_SIZE + entry * ENTRY_SIZE;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Posting list under construction. */
+    private static class Postings {
+        final byte[] term;
+        int[] ids = new int[2];
+        int size;
+
+        Postings(String term) {
+            this.term = term.getBytes(StandardCharsets.UTF_8);
+        }
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Manifest of a store split across shard files, used when the store path
+ * ends in ".shards".
+ *
+ * Task n lives in shard n mod count, so a command naming one task opens one
+ * shard, and writers on different shards do not wait for each other. Each
+ * shard is an ordinary store with its own log, lock and indexes, named
+ * "<base>.g<generation>.s<k><extension>" next to the manifest. Resharding or
+ * importing writes a new generation of files and then swaps the manifest,
+ * so a crash leaves either the old set or the new one in use. The manifest
+ * also holds the next ID to hand out, so adds to different shards never
+ * pick the same one.
+ *
+ * Format, one "key value" pair per line:
+ *   version 1
+ *   shards 4
+ *   extension .ttb
+ *   generation 2
+ *   next-id 1201
+ */
+public class ShardManifest {
+    public static final String EXTENSION = ".shards";
+    public static final int MAX_SHARDS = 1024;
+
+    private static final int VERSION = 1;
+
+    private final Path path;
+    private final int count;
+    private final String extension;
+    private final int generation;
+    private int nextId;
+
+    public ShardManifest(Path path, int count, String extension, int generation, int nextId) {
+        this.path = path;
+        this.count = count;
+        this.extension = extension;
+        this.generation = generation;
+        this.nextId = nextId;
+    }
+
+    public static boolean isManifest(Path path) {
+        return path.getFileName().toString().endsWith(EXTENSION);
+    }
+
+    /** Reads the manifest, or returns null if there is none yet. */
+    public static ShardManifest read(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        Map<String, String> fields = new HashMap<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            String[] pair = line.trim().split("\\s+", 2);
+            if (pair.length == 2) {
+                fields.put(pair[0], pair[1]);
+            }
+        }
+        try {
+            int version = Integer.parseInt(fields.getOrDefault("version", "0"));
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported shard manifest version: " + version);
+            }
+            int count = Integer.parseInt(fields.get("shards"));
+            String extension = fields.get("extension");
+            if (count < 1 || count > MAX_SHARDS || extension == null) {
+                throw new IOException("Invalid shard manifest: " + path);
+            }
+            return new ShardManifest(path, count, extension, Integer.parseInt(fields.get("generation")),
+                    Integer.parseInt(fields.get("next-id")));
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new IOException("Invalid shard manifest: " + path);
+        }
+    }
+
+    /**
+     * Hands out the next task ID. The manifest is read and rewritten under a
+     * lock of its own, held only for that, so concurrent adds get distinct IDs
+     * without serializing on any shard. Callers hold the manifest's store lock
+     * shared, which keeps resharding out.
+     */
+    public static int allocateId(Path path) throws IOException {
+        try (StoreLock lock = StoreLock.acquireSeparate(path.resolveSibling(path.getFileName() + ".ids"), false)) {
+            ShardManifest manifest = read(path);
+            if (manifest == null) {
+                throw new IOException("Shard manifest not found: " + path);
+            }
+            int id = manifest.nextId++;
+            manifest.write();
+            return id;
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public int getNextId() {
+        return nextId;
+    }
+
+    /** Manifest for the next generation of shard files, replacing this one. */
+    public ShardManifest next(int count, String extension, int nextId) {
+        return new ShardManifest(path, count, extension, generation + 1, Math.max(nextId, this.nextId));
+    }
+
+    public int shardOf(int id) {
+        return Math.floorMod(id, count);
+    }
+
+    public Path shard(int index) {
+        String name = path.getFileName().toString();
+        String base = name.substring(0, name.length() - EXTENSION.length());
+        return path.resolveSibling(base + ".g" + generation + ".s" + index + extension);
+    }
+
+    public Path shardFor(int id) {
+        return shard(shardOf(id));
+    }
+
+    public List<Path> shards() {
+        List<Path> shards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            shards.add(shard(i));
+        }
+        return shards;
+    }
+
+    /** Writes the manifest to a temporary file, syncs it and renames it into place. */
+    public void write() throws IOException {
+        String content = "version " + VERSION + "\n"
+                + "shards " + count + "\n"
+                + "extension " + extension + "\n"
+                + "generation " + generation + "\n"
+                + "next-id " + nextId + "\n";
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.writeString(temp, content, StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
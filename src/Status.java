@@ -0,0 +1,47 @@
+/**
+ * Task status. The ordinal doubles as the status code in binary snapshots, so
+ * new values must only ever be appended.
+ */
+public enum Status {
+    TODO("todo"),
+    IN_PROGRESS("in-progress"),
+    DONE("done");
+
+    private static final Status[] VALUES = values();
+
+    private final String value;
+
+    Status(String value) {
+        this.value = value;
+    }
+
+    /** The lowercase name used on the command line and in stored files. */
+    public String getValue() {
+        return value;
+    }
+
+    public static Status fromCode(int code) {
+        return VALUES[code];
+    }
+
+    /** Parses a stored or typed status, ignoring case. Returns null if unknown. */
+    public static Status parse(CharSequence text) {
+        for (Status status : VALUES) {
+            if (status.value.contentEquals(text)) {
+                return status;
+            }
+        }
+        String str = text.toString();
+        for (Status status : VALUES) {
+            if (status.value.equalsIgnoreCase(str)) {
+                return status;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+}
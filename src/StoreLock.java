@@ -0,0 +1,80 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.*;
+
+/**
+ * Advisory lock guarding a store's read-modify-write cycle across processes.
+ *
+ * The lock lives on a separate ".lock" file because the snapshot itself is
+ * replaced by rename, which would leave a lock on the old inode. Readers take a
+ * shared lock so parallel `list` calls do not serialize; writers take an
+ * exclusive one. The lock is reentrant within the process so that commands run
+ * inside a batch reuse the lock the batch already holds.
+ */
+public class StoreLock implements AutoCloseable {
+    private static FileChannel heldChannel;
+    private static FileLock heldLock;
+    private static int depth;
+
+    private final FileLock separateLock; // null for the process-wide lock
+
+    private StoreLock(FileLock separateLock) {
+        this.separateLock = separateLock;
+    }
+
+    public static StoreLock acquire(Path snapshotPath, boolean shared) throws IOException {
+        if (depth > 0) {
+            if (heldLock.isShared() && !shared) {
+                throw new IOException("Cannot upgrade a shared store lock to exclusive");
+            }
+            depth++;
+            return new StoreLock(null);
+        }
+
+        heldLock = lock(snapshotPath, shared);
+        heldChannel = heldLock.channel();
+        depth = 1;
+        return new StoreLock(null);
+    }
+
+    /**
+     * Locks another file alongside the process-wide lock, such as one shard of
+     * a sharded store or its manifest. Such locks are not reentrant, and may be
+     * held by several threads at once as long as each locks a different file.
+     */
+    public static StoreLock acquireSeparate(Path snapshotPath, boolean shared) throws IOException {
+        return new StoreLock(lock(snapshotPath, shared));
+    }
+
+    private static FileLock lock(Path snapshotPath, boolean shared) throws IOException {
+        Path lockPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".lock");
+        FileChannel channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.READ);
+        try {
+            return channel.lock(0, Long.MAX_VALUE, shared);
+        } catch (IOException e) {
+            channel.close();
+            throw new IOException("Could not lock " + lockPath + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (separateLock != null) {
+            try {
+                separateLock.release();
+            } finally {
+                separateLock.channel().close();
+            }
+        } else if (--depth == 0) {
+            try {
+                heldLock.release();
+            } finally {
+                heldChannel.close();
+                heldLock = null;
+                heldChannel = null;
+            }
+        }
+    }
+}
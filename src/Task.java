@@ -1,52 +1,74 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.TimeZone;
+
 public class Task {
+    /** Marks a missing createdAt/updatedAt. */
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    /** Length of a formatted "yyyy-MM-dd HH:mm:ss" timestamp. */
+    public static final int TIMESTAMP_LENGTH = 19;
+
     private int id;
-    private String description;
-    private String status;
-    private String priority;
-    private String createdAt;
-    private String updatedAt;
-
-    // ANSI Color codes
-    private static final String RED = "\u001B[31m";
-    private static final String YELLOW = "\u001B[33m";
-    private static final String GREEN = "\u001B[32m";
-    private static final String RESET = "\u001B[0m";
-
-    public Task(int id, String description, String status, String priority, String createdAt, String updatedAt) {
+    private byte[] description; // UTF-8, decoded on access to save the String wrapper per task
+    private Status status;
+    private Priority priority;
+    private long createdAt; // epoch seconds of the local wall-clock time, see parseTimestamp
+    private long updatedAt;
+
+    public Task(int id, String description, Status status, Priority priority, long createdAt, long updatedAt) {
         this.id = id;
-        this.description = description;
+        this.description = utf8(description);
         this.status = status;
         this.priority = priority;
         this.createdAt = createdAt;
         this.updatedAt = updatedAt;
     }
 
+    public Task(int id, String description, String status, String priority, String createdAt, String updatedAt)
+            throws IOException {
+        this(id, description, parseStatus(id, status), parsePriority(id, priority),
+                parseTimestamp(id, "createdAt", createdAt), parseTimestamp(id, "updatedAt", updatedAt));
+    }
+
     // Constructor for backward compatibility (default priority to "medium")
-    public Task(int id, String description, String status, String createdAt, String updatedAt) {
+    public Task(int id, String description, String status, String createdAt, String updatedAt) throws IOException {
         this(id, description, status, "medium", createdAt, updatedAt);
     }
 
+    /** A copy with the same fields, e.g. to keep a task's state from before a change. */
+    public Task copy() {
+        return new Task(id, getDescription(), status, priority, createdAt, updatedAt);
+    }
+
     public int getId() {
         return id;
     }
 
     public String getDescription() {
+        return description != null ? new String(description, StandardCharsets.UTF_8) : null;
+    }
+
+    /** The description as stored, without decoding or copying. Callers must not modify it. */
+    byte[] getDescriptionUtf8() {
         return description;
     }
 
-    public String getStatus() {
+    public Status getStatus() {
         return status;
     }
 
-    public String getPriority() {
+    public Priority getPriority() {
         return priority;
     }
 
-    public String getCreatedAt() {
+    public long getCreatedAt() {
         return createdAt;
     }
 
-    public String getUpdatedAt() {
+    public long getUpdatedAt() {
         return updatedAt;
     }
 
@@ -55,46 +77,206 @@ public class Task {
     }
 
     public void setDescription(String description) {
-        this.description = description;
+        this.description = utf8(description);
     }
 
-    public void setStatus(String status) {
+    private static byte[] utf8(String text) {
+        return text != null ? text.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    public void setStatus(Status status) {
         this.status = status;
     }
 
-    public void setPriority(String priority) {
+    public void setPriority(Priority priority) {
         this.priority = priority;
     }
 
-    public void setCreatedAt(String createdAt) {
+    public void setCreatedAt(long createdAt) {
         this.createdAt = createdAt;
     }
 
-    public void setUpdatedAt(String updatedAt) {
+    public void setUpdatedAt(long updatedAt) {
         this.updatedAt = updatedAt;
     }
 
     public int getPriorityValue() {
-        return switch (priority.toLowerCase()) {
-            case "high" -> 3;
-            case "medium" -> 2;
-            case "low" -> 1;
-            default -> 2; // default to medium
-        };
+        return priority.getValue();
     }
 
     public String getPriorityDisplay() {
-        return switch (priority.toLowerCase()) {
-            case "high" -> RED + "HIGH" + RESET;
-            case "medium" -> YELLOW + "MED" + RESET;
-            case "low" -> GREEN + "LOW" + RESET;
-            default -> YELLOW + "MED" + RESET;
-        };
+        return priority.getDisplay();
+    }
+
+    /**
+     * A missing status means todo. An unknown one is rejected rather than
+     * replaced, since saving the task again would lose the stored value.
+     */
+    public static Status parseStatus(int id, CharSequence status) throws IOException {
+        if (status == null) {
+            return Status.TODO;
+        }
+        Status parsed = Status.parse(status);
+        if (parsed == null) {
+            throw new IOException("Task " + id + " has an unknown status: " + status);
+        }
+        return parsed;
+    }
+
+    /** A missing priority means medium, as it always has. An unknown one is rejected. */
+    public static Priority parsePriority(int id, CharSequence priority) throws IOException {
+        if (priority == null) {
+            return Priority.MEDIUM;
+        }
+        Priority parsed = Priority.parse(priority);
+        if (parsed == null) {
+            throw new IOException("Task " + id + " has an unknown priority: " + priority);
+        }
+        return parsed;
+    }
+
+    /** A stored timestamp field: null means none, text that does not parse is rejected. */
+    public static long parseTimestamp(int id, String field, CharSequence text) throws IOException {
+        if (text == null) {
+            return NO_TIMESTAMP;
+        }
+        long seconds = parseTimestamp(text);
+        if (seconds == NO_TIMESTAMP) {
+            throw new IOException("Task " + id + " has an invalid " + field + ": " + text);
+        }
+        return seconds;
+    }
+
+    /**
+     * The local wall-clock time in whole seconds. Read through TimeZone rather
+     * than java.time, whose zone rules take tens of milliseconds to load in a
+     * fresh JVM, which is most of a one-shot command.
+     */
+    public static long now() {
+        long millis = System.currentTimeMillis();
+        return Math.floorDiv(millis + TimeZone.getDefault().getOffset(millis), 1000);
+    }
+
+    /**
+     * Converts a stored "yyyy-MM-dd HH:mm:ss" timestamp to epoch seconds. The
+     * stored text carries no zone, so it is read as UTC; formatTimestamp applies
+     * the same offset, which keeps the round trip exact.
+     */
+    public static long parseTimestamp(CharSequence text) {
+        if (text == null || text.isEmpty()) {
+            return NO_TIMESTAMP;
+        }
+        if (text.length() == TIMESTAMP_LENGTH && text.charAt(4) == '-' && text.charAt(7) == '-' && text.charAt(10) == ' '
+                && text.charAt(13) == ':' && text.charAt(16) == ':') {
+            int year = digits(text, 0, 4);
+            int month = digits(text, 5, 2);
+            int day = digits(text, 8, 2);
+            int hour = digits(text, 11, 2);
+            int minute = digits(text, 14, 2);
+            int second = digits(text, 17, 2);
+            if (year >= 1 && month >= 1 && month <= 12 && day >= 1 && day <= lengthOfMonth(year, month)
+                    && hour >= 0 && hour < 24 && minute >= 0 && minute < 60 && second >= 0 && second < 60) {
+                return daysFromCivil(year, month, day) * 86400L + hour * 3600L + minute * 60L + second;
+            }
+        }
+        try {
+            return LocalDateTime.parse(text, Formatter.TIMESTAMP).toEpochSecond(ZoneOffset.UTC);
+        } catch (RuntimeException e) {
+            return NO_TIMESTAMP;
+        }
+    }
+
+    public static String formatTimestamp(long seconds) {
+        if (seconds == NO_TIMESTAMP) {
+            return null;
+        }
+        byte[] text = new byte[TIMESTAMP_LENGTH];
+        if (!formatTimestamp(seconds, text)) {
+            return LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC).format(Formatter.TIMESTAMP);
+        }
+        return new String(text, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Writes "yyyy-MM-dd HH:mm:ss" as ASCII to the start of out. Returns false,
+     * writing nothing, for a year outside 1-9999.
+     */
+    public static boolean formatTimestamp(long seconds, byte[] out) {
+        long days = Math.floorDiv(seconds, 86400);
+        int secondOfDay = Math.floorMod(seconds, 86400);
+
+        // Civil date from days since 1970-01-01 (H. Hinnant's algorithm, inverse of daysFromCivil)
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 1 || year > 9999) {
+            return false; // "yyyy" is the year of era, so year 0 is 1 BC
+        }
+
+        putDigits(out, 0, (int) year, 4);
+        out[4] = '-';
+        putDigits(out, 5, month, 2);
+        out[7] = '-';
+        putDigits(out, 8, day, 2);
+        out[10] = ' ';
+        putDigits(out, 11, secondOfDay / 3600, 2);
+        out[13] = ':';
+        putDigits(out, 14, secondOfDay / 60 % 60, 2);
+        out[16] = ':';
+        putDigits(out, 17, secondOfDay % 60, 2);
+        return true;
+    }
+
+    private static void putDigits(byte[] out, int start, int value, int width) {
+        for (int i = start + width - 1; i >= start; i--) {
+            out[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static int digits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        if (month == 2) {
+            return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /** Days since 1970-01-01 for a proleptic Gregorian date (H. Hinnant's algorithm). */
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        int era = (year >= 0 ? year : year - 399) / 400;
+        int yearOfEra = year - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    /** Built on first use: only timestamps the fast paths reject need it, and building it is slow. */
+    private static class Formatter {
+        static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     }
 
     @Override
     public String toString() {
         return String.format("Task{id=%d, description='%s', status='%s', priority='%s', createdAt='%s', updatedAt='%s'}",
-                id, description, status, priority, createdAt, updatedAt);
+                id, getDescription(), status, priority, formatTimestamp(createdAt), formatTimestamp(updatedAt));
     }
-}
\ No newline at end of file
+}
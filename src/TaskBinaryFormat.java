@@ -0,0 +1,585 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Compact binary snapshot format, used when the store file ends in ".ttb".
+ *
+ * The file is a fixed header, one fixed-width record per task, a string
+ * section holding each distinct description once, an {@link IntIntMap} from
+ * task ID to record ordinal, a {@link TimeIndex} of record ordinals in
+ * timestamp order and a {@link TaskIndex} of status and priority bitsets.
+ * Records are read through a memory map, so filtered reads and ID lookups
+ * only decode the records they return. From version 5 a change to one task
+ * is written into the file in place (see {@link #patch}).
+ *
+ * Header (32 bytes):
+ *   0  magic "TTB1"     4  version      8  record count   12 next ID (version 3)
+ *   16 string section offset (long)     24 string section length (long)
+ * Record (32 bytes):
+ *   0  id      4  status code    5  priority code   6  flags (version 5)   7 reserved
+ *   8  createdAt (epoch seconds)     16 updatedAt (epoch seconds)
+ *   24 description offset in string section   28 description length in bytes
+ * The ID table (version 3), the time index (version 4) and then the bitset
+ * index (version 2 and later) follow the string section. Descriptions moved
+ * by a patch are appended after the indexes, their offsets still counting
+ * from the start of the string section.
+ */
+public class TaskBinaryFormat {
+    public static final String EXTENSION = ".ttb";
+
+    private static final int MAGIC = 0x54544231; // "TTB1"
+    private static final int VERSION = 5;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 32;
+
+    // Record flag: no other record points at the description bytes, so a patch may overwrite them
+    private static final int OWNS_DESCRIPTION = 1;
+
+    // Status codes are enum ordinals; priority codes are priority values (1..3)
+    static final int STATUS_COUNT = Status.values().length;
+    static final int PRIORITY_COUNT = Priority.values().length + 1;
+
+    public static boolean isBinary(Path path) {
+        return path.getFileName().toString().endsWith(EXTENSION);
+    }
+
+    public static void write(Path path, List<Task> tasks, int nextId) throws IOException {
+        TaskIndex index = TaskIndex.build(tasks);
+        TimeIndex times = TimeIndex.build(tasks);
+        IntIntMap ids = new IntIntMap(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            ids.put(tasks.get(i).getId(), i);
+        }
+        Map<String, Integer> offsets = new HashMap<>();
+        IntIntMap shared = new IntIntMap();
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        ByteBuffer records = ByteBuffer.allocate(HEADER_SIZE + tasks.size() * RECORD_SIZE);
+        records.position(HEADER_SIZE);
+
+        for (Task task : tasks) {
+            String description = task.getDescription() != null ? task.getDescription() : "";
+            byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+            Integer offset = offsets.get(description);
+            if (offset == null) {
+                offset = strings.size();
+                offsets.put(description, offset);
+                strings.write(bytes);
+            } else {
+                shared.put(offset, 0);
+            }
+
+            records.putInt(task.getId());
+            records.put(statusCode(task.getStatus()));
+            records.put(priorityCode(task.getPriority()));
+            records.putShort((short) 0);
+            records.putLong(task.getCreatedAt());
+            records.putLong(task.getUpdatedAt());
+            records.putInt(offset);
+            records.putInt(bytes.length);
+        }
+        for (int i = 0; i < tasks.size(); i++) {
+            int record = HEADER_SIZE + i * RECORD_SIZE;
+            if (!shared.containsKey(records.getInt(record + 24))) {
+                records.put(record + 6, (byte) OWNS_DESCRIPTION);
+            }
+        }
+
+        long stringsOffset = records.position();
+        records.putInt(0, MAGIC);
+        records.putInt(4, VERSION);
+        records.putInt(8, tasks.size());
+        records.putInt(12, nextId);
+        records.putLong(16, stringsOffset);
+        records.putLong(24, strings.size());
+        records.flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (records.hasRemaining()) {
+                channel.write(records);
+            }
+            ByteBuffer stringBytes = ByteBuffer.wrap(strings.toByteArray());
+            while (stringBytes.hasRemaining()) {
+                channel.write(stringBytes);
+            }
+            ByteBuffer indexBytes = ByteBuffer.allocate(ids.sizeInBytes() + times.sizeInBytes() + index.sizeInBytes());
+            ids.write(indexBytes);
+            times.write(indexBytes);
+            index.write(indexBytes);
+            indexBytes.flip();
+            while (indexBytes.hasRemaining()) {
+                channel.write(indexBytes);
+            }
+        }
+    }
+
+    /** Reads every task into a mutable list. */
+    public static List<Task> read(Path path) throws IOException {
+        return new ArrayList<>(read(path, new TaskFilter()));
+    }
+
+    /**
+     * Returns a read-only view of the tasks matching the filter. Matching
+     * ordinals come from the stored indexes; a record is only decoded when the
+     * view's get is called for it.
+     */
+    public static MappedTaskList read(Path path, TaskFilter filter) throws IOException {
+        if (Files.size(path) == 0) {
+            return new MappedTaskList(null, new int[0]);
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int count = readHeader(buffer, channel.size());
+            return new MappedTaskList(buffer, select(buffer, count, filter).stream().toArray());
+        }
+    }
+
+    /**
+     * Copies the records matching the filter, plus those of the given IDs
+     * whatever they hold, into a table. The extra IDs are the tasks a pending
+     * log changes, which may match once it is replayed. Descriptions stay in
+     * the mapped string section and are only decoded for rows the caller
+     * materializes.
+     */
+    public static TaskTable readTable(Path path, TaskFilter filter, int[] alsoIds) throws IOException {
+        if (Files.size(path) == 0) {
+            return new TaskTable();
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int count = readHeader(buffer, channel.size());
+            BitSet selected = select(buffer, count, filter);
+            if (alsoIds.length > 0) {
+                IntIntMap byId = buffer.getInt(4) < 3 ? scanIds(buffer, count) : null;
+                for (int id : alsoIds) {
+                    int ordinal = byId != null ? byId.get(id) : IntIntMap.get(buffer, idTableOffset(buffer), id);
+                    if (ordinal != IntIntMap.MISSING) {
+                        selected.set(ordinal);
+                    }
+                }
+            }
+            int[] ordinals = selected.stream().toArray();
+
+            int rows = ordinals.length;
+            int[] ids = new int[rows];
+            byte[] statuses = new byte[rows];
+            byte[] priorities = new byte[rows];
+            long[] createdAt = new long[rows];
+            long[] updatedAt = new long[rows];
+            int[] descriptionOffsets = new int[rows];
+            int[] descriptionLengths = new int[rows];
+            for (int row = 0; row < rows; row++) {
+                int record = HEADER_SIZE + ordinals[row] * RECORD_SIZE;
+                ids[row] = buffer.getInt(record);
+                statuses[row] = buffer.get(record + 4);
+                priorities[row] = buffer.get(record + 5);
+                createdAt[row] = buffer.getLong(record + 8);
+                updatedAt[row] = buffer.getLong(record + 16);
+                descriptionOffsets[row] = buffer.getInt(record + 24);
+                descriptionLengths[row] = buffer.getInt(record + 28);
+            }
+
+            // Patched descriptions may live past the indexes, so the arena runs to the end of the file
+            int stringsOffset = (int) buffer.getLong(16);
+            ByteBuffer arena = buffer.slice(stringsOffset, (int) channel.size() - stringsOffset);
+            return new TaskTable(rows, ids, statuses, priorities, createdAt, updatedAt,
+                    descriptionOffsets, descriptionLengths, arena);
+        }
+    }
+
+    /** Ordinals of the matching records, from the stored indexes where there are some. */
+    private static BitSet select(ByteBuffer buffer, int count, TaskFilter filter) {
+        int statusCode = filter.getStatus() != null ? statusCode(filter.getStatus()) : -1;
+        int priorityCode = filter.getPriority() != null ? priorityCode(filter.getPriority()) : -1;
+        int version = buffer.getInt(4);
+
+        BitSet selected;
+        if (version >= 2) {
+            selected = TaskIndex.read(buffer, bitsetOffset(buffer)).select(statusCode, priorityCode, count);
+            selected.clear(count, Math.max(count, selected.length()));
+        } else {
+            selected = new BitSet(count);
+            selected.set(0, count);
+        }
+
+        boolean scan = version < 2;
+        if (version >= 4) {
+            int times = timeIndexOffset(buffer);
+            if (filter.hasCreatedRange()) {
+                selected.and(TimeIndex.range(buffer, times, false,
+                        filter.getCreatedFrom(), filter.getCreatedTo(), i -> createdAt(buffer, i)));
+            }
+            if (filter.hasUpdatedRange() && TimeIndex.hasUpdatedOrder(buffer, times)) {
+                selected.and(TimeIndex.range(buffer, times, true,
+                        filter.getUpdatedFrom(), filter.getUpdatedTo(), i -> updatedAt(buffer, i)));
+            } else {
+                scan = filter.hasUpdatedRange();
+            }
+        } else {
+            scan |= filter.hasCreatedRange() || filter.hasUpdatedRange();
+        }
+        if (scan) {
+            // Older files lack some of the indexes, and patches leave the updatedAt order stale,
+            // so check the fields of every candidate record
+            for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+                int record = HEADER_SIZE + i * RECORD_SIZE;
+                boolean match = (statusCode < 0 || buffer.get(record + 4) == statusCode)
+                        && (priorityCode < 0 || buffer.get(record + 5) == priorityCode)
+                        && createdAt(buffer, i) >= filter.getCreatedFrom() && createdAt(buffer, i) <= filter.getCreatedTo()
+                        && updatedAt(buffer, i) >= filter.getUpdatedFrom() && updatedAt(buffer, i) <= filter.getUpdatedTo();
+                if (!match) {
+                    selected.clear(i);
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static long createdAt(ByteBuffer buffer, int ordinal) {
+        return buffer.getLong(HEADER_SIZE + ordinal * RECORD_SIZE + 8);
+    }
+
+    private static long updatedAt(ByteBuffer buffer, int ordinal) {
+        return buffer.getLong(HEADER_SIZE + ordinal * RECORD_SIZE + 16);
+    }
+
+    /** Builds the ID to ordinal map of a file written before the ID table was stored. */
+    private static IntIntMap scanIds(ByteBuffer buffer, int count) {
+        IntIntMap ordinals = new IntIntMap(count);
+        for (int i = 0; i < count; i++) {
+            ordinals.put(buffer.getInt(HEADER_SIZE + i * RECORD_SIZE), i);
+        }
+        return ordinals;
+    }
+
+    /** Looks up a single task by ID, decoding only its record. Returns null if absent. */
+    public static Task find(Path path, int id) throws IOException {
+        if (Files.size(path) == 0) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int count = readHeader(buffer, channel.size());
+            int stringsOffset = (int) buffer.getLong(16);
+
+            if (buffer.getInt(4) >= 3) {
+                int ordinal = IntIntMap.get(buffer, idTableOffset(buffer), id);
+                return ordinal != IntIntMap.MISSING
+                        ? decode(buffer, HEADER_SIZE + ordinal * RECORD_SIZE, stringsOffset)
+                        : null;
+            }
+
+            for (int i = 0; i < count; i++) {
+                int record = HEADER_SIZE + i * RECORD_SIZE;
+                if (buffer.getInt(record) == id) {
+                    return decode(buffer, record, stringsOffset);
+                }
+            }
+            return null;
+        }
+    }
+
+    /** Looks up several tasks by ID with one mapping of the file, skipping absent IDs. */
+    public static List<Task> findAll(Path path, int[] ids) throws IOException {
+        List<Task> tasks = new ArrayList<>(ids.length);
+        if (Files.size(path) == 0) {
+            return tasks;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int count = readHeader(buffer, channel.size());
+            int stringsOffset = (int) buffer.getLong(16);
+
+            IntIntMap ordinals = buffer.getInt(4) < 3 ? scanIds(buffer, count) : null;
+            for (int id : ids) {
+                int ordinal = ordinals != null ? ordinals.get(id) : IntIntMap.get(buffer, idTableOffset(buffer), id);
+                if (ordinal != IntIntMap.MISSING) {
+                    tasks.add(decode(buffer, HEADER_SIZE + ordinal * RECORD_SIZE, stringsOffset));
+                }
+            }
+            return tasks;
+        }
+    }
+
+    /**
+     * Returns the next ID to hand out. Version 3 files store it as a high-water
+     * mark, so IDs of deleted tasks are never reused; older files fall back to
+     * the highest ID present.
+     */
+    public static int readNextId(Path path) throws IOException {
+        if (!Files.exists(path) || Files.size(path) == 0) {
+            return 1;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int count = readHeader(buffer, channel.size());
+            if (buffer.getInt(4) >= 3) {
+                return buffer.getInt(12);
+            }
+
+            int maxId = 0;
+            for (int i = 0; i < count; i++) {
+                maxId = Math.max(maxId, buffer.getInt(HEADER_SIZE + i * RECORD_SIZE));
+            }
+            return maxId + 1;
+        }
+    }
+
+    /**
+     * Writes a task's current status, priority and updatedAt over its record,
+     * and its description too when withDescription is set. Fixed-width fields
+     * always fit. A description is overwritten in place when it is no longer
+     * than the old one and no other record shares those bytes; otherwise it
+     * is appended to the file and only the record is pointed at it. The
+     * bitsets and time index are kept usable with a few more small writes.
+     *
+     * Returns the number of bytes written, or 0 without touching the file if
+     * it predates version 5 or does not hold the task. The writes are ordered
+     * so that a crash part way leaves the indexes naming too many records
+     * rather than too few, which readers filter out again.
+     */
+    public static int patch(Path path, Task task, boolean withDescription) throws IOException {
+        if (!Files.exists(path) || Files.size(path) == 0) {
+            return 0;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            readHeader(buffer, channel.size());
+            if (buffer.getInt(4) < 5) {
+                return 0;
+            }
+            int ordinal = IntIntMap.get(buffer, idTableOffset(buffer), task.getId());
+            if (ordinal == IntIntMap.MISSING) {
+                return 0;
+            }
+
+            int record = HEADER_SIZE + ordinal * RECORD_SIZE;
+            long stringsOffset = buffer.getLong(16);
+            int oldStatus = buffer.get(record + 4);
+            int oldPriority = buffer.get(record + 5);
+            byte flags = buffer.get(record + 6);
+            int descriptionOffset = buffer.getInt(record + 24);
+            int descriptionLength = buffer.getInt(record + 28);
+            int written = 0;
+
+            int times = timeIndexOffset(buffer);
+            if (task.getUpdatedAt() != buffer.getLong(record + 16) && TimeIndex.hasUpdatedOrder(buffer, times)) {
+                written += writeAt(channel, ByteBuffer.allocate(4).putInt(0, TimeIndex.staleCountWord(buffer, times)), times);
+            }
+
+            if (withDescription) {
+                byte[] bytes = (task.getDescription() != null ? task.getDescription() : "").getBytes(StandardCharsets.UTF_8);
+                if ((flags & OWNS_DESCRIPTION) != 0 && bytes.length <= descriptionLength) {
+                    written += writeAt(channel, ByteBuffer.wrap(bytes), stringsOffset + descriptionOffset);
+                } else {
+                    long end = channel.size();
+                    if (end + bytes.length - stringsOffset > Integer.MAX_VALUE) {
+                        throw new IOException("Binary tasks file would exceed 2 GB");
+                    }
+                    written += writeAt(channel, ByteBuffer.wrap(bytes), end);
+                    descriptionOffset = (int) (end - stringsOffset);
+                    flags |= OWNS_DESCRIPTION;
+                }
+                descriptionLength = bytes.length;
+            }
+
+            int newStatus = statusCode(task.getStatus());
+            int newPriority = priorityCode(task.getPriority());
+            int bitsets = bitsetOffset(buffer);
+            if (newStatus != oldStatus) {
+                written += setBit(channel, buffer, bitsets, newStatus, ordinal, true);
+            }
+            if (newPriority != oldPriority) {
+                written += setBit(channel, buffer, bitsets, STATUS_COUNT + newPriority, ordinal, true);
+            }
+
+            ByteBuffer fields = ByteBuffer.allocate(RECORD_SIZE - 4);
+            fields.put((byte) newStatus).put((byte) newPriority).put(flags).put((byte) 0);
+            fields.putLong(buffer.getLong(record + 8)).putLong(task.getUpdatedAt());
+            fields.putInt(descriptionOffset).putInt(descriptionLength);
+            written += writeAt(channel, fields.flip(), record + 4);
+
+            if (newStatus != oldStatus) {
+                written += setBit(channel, buffer, bitsets, oldStatus, ordinal, false);
+            }
+            if (newPriority != oldPriority) {
+                written += setBit(channel, buffer, bitsets, STATUS_COUNT + oldPriority, ordinal, false);
+            }
+            channel.force(false);
+            return written;
+        }
+    }
+
+    /** Bytes of descriptions that patches have appended past the indexes, wasted until the next rewrite. */
+    public static long relocatedBytes(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            readHeader(buffer, channel.size());
+            if (buffer.getInt(4) < 5) {
+                return 0;
+            }
+            int bitsets = bitsetOffset(buffer);
+            return channel.size() - (bitsets + TaskIndex.storedSize(buffer, bitsets));
+        }
+    }
+
+    /** Copy of the record section, to keep current through {@link #updateRecords}. */
+    public static byte[] records(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            readHeader(buffer, channel.size());
+            byte[] records = new byte[buffer.getInt(8) * RECORD_SIZE];
+            buffer.get(HEADER_SIZE, records);
+            return records;
+        }
+    }
+
+    /**
+     * IDs of the records that differ between a copy taken by {@link #records}
+     * and the file, after patches. The copy is compared with the mapped file,
+     * skipping runs of equal records with a vectorized comparison, and only
+     * the records that differ are copied into it. Returns null, leaving the
+     * copy alone, if the file holds a different number of records.
+     */
+    public static int[] updateRecords(Path path, byte[] records) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (readHeader(buffer, channel.size()) * RECORD_SIZE != records.length) {
+                return null;
+            }
+            ByteBuffer current = buffer.slice(HEADER_SIZE, records.length);
+            ByteBuffer copy = ByteBuffer.wrap(records);
+            int[] ids = new int[16];
+            int count = 0;
+            int offset = 0;
+            while (offset < records.length) {
+                int mismatch = copy.slice(offset, records.length - offset).mismatch(current.slice(offset, records.length - offset));
+                if (mismatch < 0) {
+                    break;
+                }
+                int record = (offset + mismatch) / RECORD_SIZE * RECORD_SIZE;
+                current.get(record, records, record, RECORD_SIZE);
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                }
+                ids[count++] = copy.getInt(record);
+                offset = record + RECORD_SIZE;
+            }
+            return Arrays.copyOf(ids, count);
+        }
+    }
+
+    /** Sets or clears one bit of a stored bitset with an 8-byte write. */
+    private static int setBit(FileChannel channel, ByteBuffer buffer, int bitsets, int set, int ordinal,
+                              boolean value) throws IOException {
+        int word = TaskIndex.wordOffset(buffer, bitsets, set, ordinal);
+        if (word < 0) {
+            throw new IOException("Binary tasks file index is truncated or corrupt");
+        }
+        long bits = buffer.getLong(word);
+        long mask = 1L << (ordinal % 64);
+        return writeAt(channel, ByteBuffer.allocate(8).putLong(0, value ? bits | mask : bits & ~mask), word);
+    }
+
+    private static int writeAt(FileChannel channel, ByteBuffer bytes, long position) throws IOException {
+        int written = 0;
+        while (bytes.hasRemaining()) {
+            written += channel.write(bytes, position + written);
+        }
+        return written;
+    }
+
+    private static int idTableOffset(ByteBuffer buffer) {
+        return (int) (buffer.getLong(16) + buffer.getLong(24));
+    }
+
+    private static int timeIndexOffset(ByteBuffer buffer) {
+        int offset = idTableOffset(buffer);
+        if (buffer.getInt(4) >= 3) {
+            offset += 4 + buffer.getInt(offset) * 8;
+        }
+        return offset;
+    }
+
+    private static int bitsetOffset(ByteBuffer buffer) {
+        int offset = timeIndexOffset(buffer);
+        if (buffer.getInt(4) >= 4) {
+            offset += TimeIndex.storedSize(buffer, offset);
+        }
+        return offset;
+    }
+
+    private static int readHeader(ByteBuffer buffer, long size) throws IOException {
+        if (size < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a task tracker binary file");
+        }
+        if (buffer.getInt(4) < 1 || buffer.getInt(4) > VERSION) {
+            throw new IOException("Unsupported binary format version: " + buffer.getInt(4));
+        }
+        int count = buffer.getInt(8);
+        long stringsOffset = buffer.getLong(16);
+        long stringsLength = buffer.getLong(24);
+        if (stringsOffset != HEADER_SIZE + (long) count * RECORD_SIZE || stringsOffset + stringsLength > size) {
+            throw new IOException("Binary tasks file is truncated or corrupt");
+        }
+        return count;
+    }
+
+    private static Task decode(ByteBuffer buffer, int record, int stringsOffset) {
+        int id = buffer.getInt(record);
+        Status status = Status.fromCode(buffer.get(record + 4));
+        Priority priority = Priority.fromValue(buffer.get(record + 5));
+        long createdAt = buffer.getLong(record + 8);
+        long updatedAt = buffer.getLong(record + 16);
+
+        byte[] bytes = new byte[buffer.getInt(record + 28)];
+        buffer.get(stringsOffset + buffer.getInt(record + 24), bytes);
+        String description = new String(bytes, StandardCharsets.UTF_8);
+
+        return new Task(id, description, status, priority, createdAt, updatedAt);
+    }
+
+    /** Lazily decoded list over selected records of a mapped snapshot. */
+    public static class MappedTaskList extends AbstractList<Task> implements RandomAccess {
+        private final ByteBuffer buffer;
+        private final int[] ordinals;
+
+        private MappedTaskList(ByteBuffer buffer, int[] ordinals) {
+            this.buffer = buffer;
+            this.ordinals = ordinals;
+        }
+
+        @Override
+        public Task get(int index) {
+            return decode(buffer, record(index), (int) buffer.getLong(16));
+        }
+
+        @Override
+        public int size() {
+            return ordinals.length;
+        }
+
+        private int record(int index) {
+            return HEADER_SIZE + ordinals[index] * RECORD_SIZE;
+        }
+    }
+
+    static byte statusCode(Status status) {
+        return (byte) status.ordinal();
+    }
+
+    static byte priorityCode(Priority priority) {
+        return (byte) priority.getValue();
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Unix domain socket server and client for `serve` mode.
+ *
+ * A request is the argument count followed by each argument as a length-prefixed
+ * UTF-8 string. The response is the command's stdout and then its stderr, each
+ * length-prefixed. Connections are handled on virtual threads, but commands run
+ * one at a time: they share the resident store and the process-wide System.out,
+ * which is swapped for a buffer while each command runs.
+ */
+public class TaskDaemon {
+    private static final ReentrantLock COMMAND_LOCK = new ReentrantLock();
+
+    public static Path socketPath(Path snapshotPath) {
+        return snapshotPath.resolveSibling(snapshotPath.getFileName() + ".sock");
+    }
+
+    /**
+     * Sends the command to a running daemon and prints its output. Returns false
+     * if no daemon is listening, in which case the caller should run it directly.
+     */
+    public static boolean forward(Path socketPath, String[] args) throws IOException {
+        if (!Files.exists(socketPath)) {
+            return false;
+        }
+
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath));
+        } catch (IOException e) {
+            return false; // stale socket file left by a daemon that died
+        }
+
+        try (channel) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(args.length);
+            for (String arg : args) {
+                writeBytes(out, arg.getBytes(StandardCharsets.UTF_8));
+            }
+            out.flush();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            System.out.write(readBytes(in));
+            System.out.flush();
+            System.err.write(readBytes(in));
+            System.err.flush();
+        }
+        return true;
+    }
+
+    /** Accepts connections until the process is stopped. */
+    public static void serve(Path socketPath) throws IOException {
+        if (forward(socketPath, new String[0])) {
+            throw new IOException("A daemon is already listening on " + socketPath);
+        }
+        Files.deleteIfExists(socketPath);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            socketPath.toFile().deleteOnExit();
+            System.out.println("Listening on " + socketPath + " (Ctrl+C to stop)");
+
+            while (true) {
+                SocketChannel client = server.accept();
+                Thread.ofVirtual().start(() -> handle(client));
+            }
+        }
+    }
+
+    private static void handle(SocketChannel client) {
+        try (client) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(client)));
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = new String(readBytes(in), StandardCharsets.UTF_8);
+            }
+
+            ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+            ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+            if (args.length > 0) {
+                run(args, stdout, stderr);
+            }
+
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)));
+            writeBytes(out, stdout.toByteArray());
+            writeBytes(out, stderr.toByteArray());
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Warning: Client connection failed: " + e.getMessage());
+        }
+    }
+
+    private static void run(String[] args, ByteArrayOutputStream stdout, ByteArrayOutputStream stderr) {
+        COMMAND_LOCK.lock();
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        try {
+            System.setOut(new PrintStream(stdout, true, StandardCharsets.UTF_8));
+            System.setErr(new PrintStream(stderr, true, StandardCharsets.UTF_8));
+            TaskTracker.execute(args);
+        } finally {
+            System.setOut(originalOut);
+            System.setErr(originalErr);
+            COMMAND_LOCK.unlock();
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Conditions a listed task must meet. A null status or priority matches
+ * anything; time ranges are inclusive epoch seconds (see {@link Task#parseTimestamp})
+ * and default to unbounded.
+ */
+public class TaskFilter {
+    private Status status;
+    private Priority priority;
+    private long createdFrom = Long.MIN_VALUE;
+    private long createdTo = Long.MAX_VALUE;
+    private long updatedFrom = Long.MIN_VALUE;
+    private long updatedTo = Long.MAX_VALUE;
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public long getCreatedFrom() {
+        return createdFrom;
+    }
+
+    public long getCreatedTo() {
+        return createdTo;
+    }
+
+    public long getUpdatedFrom() {
+        return updatedFrom;
+    }
+
+    public long getUpdatedTo() {
+        return updatedTo;
+    }
+
+    public TaskFilter status(Status status) {
+        this.status = status;
+        return this;
+    }
+
+    public TaskFilter priority(Priority priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    public TaskFilter created(long from, long to) {
+        this.createdFrom = from;
+        this.createdTo = to;
+        return this;
+    }
+
+    public TaskFilter updated(long from, long to) {
+        this.updatedFrom = from;
+        this.updatedTo = to;
+        return this;
+    }
+
+    public boolean hasCreatedRange() {
+        return createdFrom != Long.MIN_VALUE || createdTo != Long.MAX_VALUE;
+    }
+
+    public boolean hasUpdatedRange() {
+        return updatedFrom != Long.MIN_VALUE || updatedTo != Long.MAX_VALUE;
+    }
+
+    public boolean matches(Task task) {
+        return (status == null || task.getStatus() == status)
+                && (priority == null || task.getPriority() == priority)
+                && task.getCreatedAt() >= createdFrom && task.getCreatedAt() <= createdTo
+                && task.getUpdatedAt() >= updatedFrom && task.getUpdatedAt() <= updatedTo;
+    }
+}
@@ -0,0 +1,294 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Status transitions of every task, appended to "<store>.history" as
+ * fixed-size binary events. For a sharded store the file sits next to the
+ * manifest, so resharding leaves it alone.
+ *
+ * Each event points back at the task's previous event, so one task's
+ * history is a walk along a short chain. The head of each chain is found
+ * through a checkpoint in "<store>.history.idx", an {@link IntIntMap} from
+ * task ID to its latest event that is rewritten every
+ * {@link #CHECKPOINT_EVENTS} appends, plus a scan of the few events appended
+ * since. Reports scan the file front to back through memory maps.
+ *
+ * Header (16 bytes):  0 magic "TTH1"   4 version   8 reserved
+ * Event (20 bytes):
+ *   0  task ID   4  from status code   5  to status code   6  reserved
+ *   8  ordinal of the task's previous event, or -1; always -1 for a creation,
+ *      so an ID that a JSON store reuses after a delete starts a new chain
+ *   12 epoch millis, on the same wall clock as task timestamps
+ * A status code of -1 marks creation (as from) or deletion (as to). An
+ * event from done to done records the completion of a task that was done
+ * before its history was kept, dated at the updatedAt it had then.
+ * Checkpoint: 0 magic "TTHI"   4 version   8 events covered   12 ID table
+ */
+public class TaskHistory {
+    private static final int MAGIC = 0x54544831; // "TTH1"
+    private static final int INDEX_MAGIC = 0x54544849; // "TTHI"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int EVENT_SIZE = 20;
+    private static final int INDEX_HEADER_SIZE = 12;
+    private static final int NONE = -1;
+    private static final int CHECKPOINT_EVENTS = 4096;
+    private static final int WINDOW_EVENTS = 1 << 22; // events per mapped window while scanning
+
+    public static class Event {
+        private final int taskId;
+        private final Status from;
+        private final Status to;
+        private final long millis;
+
+        Event(int taskId, Status from, Status to, long millis) {
+            this.taskId = taskId;
+            this.from = from;
+            this.to = to;
+            this.millis = millis;
+        }
+
+        public int getTaskId() {
+            return taskId;
+        }
+
+        /** Status before the transition, or null when the task was created. */
+        public Status getFrom() {
+            return from;
+        }
+
+        /** Status after the transition, or null when the task was deleted. */
+        public Status getTo() {
+            return to;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+    }
+
+    public interface Visitor {
+        void event(int taskId, Status from, Status to, long millis);
+    }
+
+    public static Path pathFor(Path storePath) {
+        return storePath.resolveSibling(storePath.getFileName() + ".history");
+    }
+
+    private static Path indexPathFor(Path storePath) {
+        return storePath.resolveSibling(storePath.getFileName() + ".history.idx");
+    }
+
+    /**
+     * Appends one transition; from or to is null for creation or deletion.
+     * The file has a lock of its own because the shards of a sharded store
+     * append to one history concurrently. Events are not synced, so a crash
+     * may lose the last few; a torn event at the end is overwritten.
+     */
+    public static void append(Path storePath, int taskId, Status from, Status to, long millis) throws IOException {
+        appendAll(storePath, List.of(new Event(taskId, from, to, millis)));
+    }
+
+    /** Appends several transitions, in order, with a single write. */
+    public static void appendAll(Path storePath, List<Event> transitions) throws IOException {
+        if (transitions.isEmpty()) {
+            return;
+        }
+
+        Path path = pathFor(storePath);
+        try (StoreLock lock = StoreLock.acquireSeparate(path, false);
+             FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                     StandardOpenOption.WRITE)) {
+            if (channel.size() < HEADER_SIZE) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(0);
+                channel.write(header.flip(), 0);
+            }
+            int events = eventCount(channel);
+            int covered = checkpointedEvents(storePath, events);
+
+            // Chain heads from the tail after the checkpoint, then from the events being added
+            IntIntMap heads = new IntIntMap();
+            ByteBuffer tail = ByteBuffer.allocate((events - covered) * EVENT_SIZE);
+            channel.read(tail, HEADER_SIZE + (long) covered * EVENT_SIZE);
+            for (int ordinal = covered; ordinal < events; ordinal++) {
+                heads.put(tail.getInt((ordinal - covered) * EVENT_SIZE), ordinal);
+            }
+            MappedByteBuffer checkpoint = null;
+            if (covered > 0) {
+                try (FileChannel index = FileChannel.open(indexPathFor(storePath), StandardOpenOption.READ)) {
+                    checkpoint = index.map(FileChannel.MapMode.READ_ONLY, 0, index.size());
+                }
+            }
+
+            ByteBuffer out = ByteBuffer.allocate(transitions.size() * EVENT_SIZE);
+            int ordinal = events;
+            for (Event event : transitions) {
+                int previous = event.from == null ? NONE : heads.get(event.taskId);
+                if (event.from != null && previous == IntIntMap.MISSING && checkpoint != null) {
+                    previous = IntIntMap.get(checkpoint, INDEX_HEADER_SIZE, event.taskId);
+                }
+                out.putInt(event.taskId).put(code(event.from)).put(code(event.to)).putShort((short) 0)
+                        .putInt(previous).putLong(event.millis);
+                heads.put(event.taskId, ordinal++);
+            }
+            out.flip();
+            long position = HEADER_SIZE + (long) events * EVENT_SIZE;
+            while (out.hasRemaining()) {
+                position += channel.write(out, position);
+            }
+
+            if (ordinal - covered >= CHECKPOINT_EVENTS) {
+                checkpoint(storePath, channel, covered, ordinal);
+            }
+        }
+    }
+
+    /** The task's events, oldest first; empty if none were recorded. */
+    public static List<Event> events(Path storePath, int taskId) throws IOException {
+        Path path = pathFor(storePath);
+        List<Event> events = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return events;
+        }
+
+        try (StoreLock lock = StoreLock.acquireSeparate(path, true);
+             FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            int count = eventCount(channel);
+            int ordinal = latest(storePath, channel, checkpointedEvents(storePath, count), count, taskId);
+            ByteBuffer event = ByteBuffer.allocate(EVENT_SIZE);
+            while (ordinal >= 0) {
+                event.clear();
+                channel.read(event, HEADER_SIZE + (long) ordinal * EVENT_SIZE);
+                events.add(new Event(taskId, status(event.get(4)), status(event.get(5)), event.getLong(12)));
+                ordinal = event.getInt(8);
+            }
+        }
+        Collections.reverse(events);
+        return events;
+    }
+
+    /**
+     * When each task that is done now was completed, in epoch seconds: the
+     * time of its latest transition to done. Tasks without one are left out.
+     */
+    public static Map<Integer, Long> completions(Path storePath) throws IOException {
+        Map<Integer, Long> completed = new HashMap<>();
+        scan(storePath, (id, from, to, millis) -> {
+            if (to == Status.DONE) {
+                completed.put(id, Math.floorDiv(millis, 1000));
+            } else {
+                completed.remove(id);
+            }
+        });
+        return completed;
+    }
+
+    /** Passes every event to the visitor in the order they were appended. */
+    public static void scan(Path storePath, Visitor visitor) throws IOException {
+        Path path = pathFor(storePath);
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        try (StoreLock lock = StoreLock.acquireSeparate(path, true);
+             FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            int count = eventCount(channel);
+            for (int first = 0; first < count; first += WINDOW_EVENTS) {
+                int window = Math.min(WINDOW_EVENTS, count - first);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + (long) first * EVENT_SIZE, (long) window * EVENT_SIZE);
+                for (int offset = 0; offset < window * EVENT_SIZE; offset += EVENT_SIZE) {
+                    visitor.event(buffer.getInt(offset), status(buffer.get(offset + 4)),
+                            status(buffer.get(offset + 5)), buffer.getLong(offset + 12));
+                }
+            }
+        }
+    }
+
+    private static int eventCount(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        channel.read(header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported history file");
+        }
+        return (int) ((channel.size() - HEADER_SIZE) / EVENT_SIZE);
+    }
+
+    /** Events the checkpoint covers, or 0 if there is none or it runs past the file. */
+    private static int checkpointedEvents(Path storePath, int events) throws IOException {
+        Path indexPath = indexPathFor(storePath);
+        if (!Files.exists(indexPath)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+            channel.read(header, 0);
+            if (header.getInt(0) != INDEX_MAGIC || header.getInt(4) != VERSION) {
+                return 0;
+            }
+            int covered = header.getInt(8);
+            return covered <= events ? covered : 0;
+        }
+    }
+
+    /** Ordinal of the task's latest event: the tail after the checkpoint first, then the checkpoint. */
+    private static int latest(Path storePath, FileChannel channel, int covered, int events, int taskId) throws IOException {
+        ByteBuffer tail = ByteBuffer.allocate((events - covered) * EVENT_SIZE);
+        channel.read(tail, HEADER_SIZE + (long) covered * EVENT_SIZE);
+        for (int ordinal = events - 1; ordinal >= covered; ordinal--) {
+            if (tail.getInt((ordinal - covered) * EVENT_SIZE) == taskId) {
+                return ordinal;
+            }
+        }
+        if (covered == 0) {
+            return NONE;
+        }
+
+        try (FileChannel index = FileChannel.open(indexPathFor(storePath), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = index.map(FileChannel.MapMode.READ_ONLY, 0, index.size());
+            return IntIntMap.get(buffer, INDEX_HEADER_SIZE, taskId);
+        }
+    }
+
+    /** Rewrites the checkpoint to cover every event, folding the tail into the previous one. */
+    private static void checkpoint(Path storePath, FileChannel channel, int covered, int events) throws IOException {
+        IntIntMap heads = new IntIntMap();
+        Path indexPath = indexPathFor(storePath);
+        if (covered > 0) {
+            ByteBuffer previous = ByteBuffer.wrap(Files.readAllBytes(indexPath));
+            int capacity = previous.getInt(INDEX_HEADER_SIZE);
+            for (int slot = 0; slot < capacity; slot++) {
+                int entry = INDEX_HEADER_SIZE + 4 + slot * 8;
+                int ordinal = previous.getInt(entry + 4);
+                if (ordinal != IntIntMap.MISSING) {
+                    heads.put(previous.getInt(entry), ordinal);
+                }
+            }
+        }
+
+        ByteBuffer tail = ByteBuffer.allocate((events - covered) * EVENT_SIZE);
+        channel.read(tail, HEADER_SIZE + (long) covered * EVENT_SIZE);
+        for (int ordinal = covered; ordinal < events; ordinal++) {
+            heads.put(tail.getInt((ordinal - covered) * EVENT_SIZE), ordinal);
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(INDEX_HEADER_SIZE + heads.sizeInBytes());
+        out.putInt(INDEX_MAGIC).putInt(VERSION).putInt(events);
+        heads.write(out);
+        Path temp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        Files.write(temp, out.array());
+        Files.move(temp, indexPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static byte code(Status status) {
+        return (byte) (status != null ? status.ordinal() : NONE);
+    }
+
+    private static Status status(byte code) {
+        return code != NONE ? Status.fromCode(code) : null;
+    }
+}
@@ -0,0 +1,121 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.*;
+
+/**
+ * Per-status and per-priority bitsets over record ordinals.
+ *
+ * Stored at the end of binary snapshots so that a filtered list can intersect
+ * two bitsets and decode only the records that match, instead of walking every
+ * record in the file. Every bitset is written with one word per 64 records,
+ * so a patched record can move between sets without resizing any of them.
+ */
+public class TaskIndex {
+    private final BitSet[] byStatus;
+    private final BitSet[] byPriority;
+    private final int words;
+
+    private TaskIndex(BitSet[] byStatus, BitSet[] byPriority, int words) {
+        this.byStatus = byStatus;
+        this.byPriority = byPriority;
+        this.words = words;
+    }
+
+    public static TaskIndex build(List<Task> tasks) {
+        BitSet[] byStatus = newBitSets(TaskBinaryFormat.STATUS_COUNT);
+        BitSet[] byPriority = newBitSets(TaskBinaryFormat.PRIORITY_COUNT);
+
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            byStatus[TaskBinaryFormat.statusCode(task.getStatus())].set(i);
+            byPriority[TaskBinaryFormat.priorityCode(task.getPriority())].set(i);
+        }
+        return new TaskIndex(byStatus, byPriority, (tasks.size() + 63) / 64);
+    }
+
+    /**
+     * Returns the ordinals matching the given status and priority codes, where
+     * a negative code matches anything.
+     */
+    public BitSet select(int statusCode, int priorityCode, int recordCount) {
+        BitSet result;
+        if (statusCode >= 0) {
+            result = (BitSet) byStatus[statusCode].clone();
+            if (priorityCode >= 0) {
+                result.and(byPriority[priorityCode]);
+            }
+        } else if (priorityCode >= 0) {
+            result = (BitSet) byPriority[priorityCode].clone();
+        } else {
+            result = new BitSet(recordCount);
+            result.set(0, recordCount);
+        }
+        return result;
+    }
+
+    public int sizeInBytes() {
+        return (byStatus.length + byPriority.length) * (4 + words * 8);
+    }
+
+    /** Writes each bitset as a word count followed by its words. */
+    public void write(ByteBuffer buffer) {
+        for (BitSet bits : byStatus) writeBits(buffer, bits, words);
+        for (BitSet bits : byPriority) writeBits(buffer, bits, words);
+    }
+
+    public static TaskIndex read(ByteBuffer buffer, int offset) {
+        ByteBuffer in = buffer.duplicate();
+        in.position(offset);
+        BitSet[] byStatus = new BitSet[TaskBinaryFormat.STATUS_COUNT];
+        BitSet[] byPriority = new BitSet[TaskBinaryFormat.PRIORITY_COUNT];
+        for (int i = 0; i < byStatus.length; i++) byStatus[i] = readBits(in);
+        for (int i = 0; i < byPriority.length; i++) byPriority[i] = readBits(in);
+        return new TaskIndex(byStatus, byPriority, buffer.getInt(offset));
+    }
+
+    /** Size of an index written at the given offset. */
+    public static int storedSize(ByteBuffer buffer, int offset) {
+        int end = offset;
+        for (int i = 0; i < TaskBinaryFormat.STATUS_COUNT + TaskBinaryFormat.PRIORITY_COUNT; i++) {
+            end += 4 + buffer.getInt(end) * 8;
+        }
+        return end - offset;
+    }
+
+    /**
+     * Offset of the word holding an ordinal's bit in the given set of an index
+     * stored at offset; status sets come first, then priority sets. Returns -1
+     * if the set stops short of it, as sets written before version 5 can.
+     */
+    public static int wordOffset(ByteBuffer buffer, int offset, int set, int ordinal) {
+        for (int i = 0; i < set; i++) {
+            offset += 4 + buffer.getInt(offset) * 8;
+        }
+        return ordinal / 64 < buffer.getInt(offset) ? offset + 4 + (ordinal / 64) * 8 : -1;
+    }
+
+    private static void writeBits(ByteBuffer buffer, BitSet bits, int words) {
+        long[] set = bits.toLongArray();
+        buffer.putInt(words);
+        for (int i = 0; i < words; i++) {
+            buffer.putLong(i < set.length ? set[i] : 0);
+        }
+    }
+
+    private static BitSet readBits(ByteBuffer in) {
+        int words = in.getInt();
+        LongBuffer longs = in.slice().asLongBuffer();
+        longs.limit(words);
+        in.position(in.position() + words * 8);
+        return BitSet.valueOf(longs);
+    }
+
+    private static BitSet[] newBitSets(int count) {
+        BitSet[] sets = new BitSet[count];
+        for (int i = 0; i < count; i++) {
+            sets[i] = new BitSet();
+        }
+        return sets;
+    }
+}
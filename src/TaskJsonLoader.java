@@ -0,0 +1,219 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Loads a tasks.json snapshot, parsing large files in parallel.
+ *
+ * JSON strings cannot contain a raw newline, so a line whose first
+ * non-blank character is '{' starts an object at the top level of the array
+ * as written by this tool. Files above {@link #PARALLEL_THRESHOLD} are split
+ * at such lines and each chunk is parsed by its own {@link TaskJsonReader} on
+ * the common ForkJoin pool. Chunks are merged in file order, which is ID
+ * order for files this tool writes, so the result matches a sequential
+ * parse. Chunks are parsed strictly; if one fails (e.g. a hand-edited file
+ * with nested objects on their own lines) the whole file is parsed
+ * sequentially instead, which also reports any genuine problems.
+ */
+public class TaskJsonLoader {
+    /**
+     * Files smaller than this are parsed on the calling thread. Below about
+     * 8 MB (~40k tasks) a sequential parse takes under 30 ms, too little to
+     * pay for starting the pool's worker threads on a cold run.
+     */
+    public static final long PARALLEL_THRESHOLD = 8L * 1024 * 1024;
+
+    private static final long MIN_CHUNK_SIZE = 4L * 1024 * 1024;
+    private static final int SCAN_WINDOW = 64 * 1024;
+
+    public static List<Task> readAll(Path path) throws IOException {
+        long[] bounds = chunkBounds(path);
+        List<List<Task>> parts = bounds != null ? parseChunks(path, bounds, TaskJsonReader::readAll) : null;
+        if (parts == null) {
+            try (Reader in = Files.newBufferedReader(path)) {
+                return new TaskJsonReader(in).readAll();
+            }
+        }
+
+        List<Task> tasks = new ArrayList<>(parts.stream().mapToInt(List::size).sum());
+        parts.forEach(tasks::addAll);
+        return tasks;
+    }
+
+    public static TaskTable readTable(Path path) throws IOException {
+        long[] bounds = chunkBounds(path);
+        List<TaskTable> parts = bounds != null ? parseChunks(path, bounds, TaskJsonReader::readTable) : null;
+        if (parts == null) {
+            try (Reader in = Files.newBufferedReader(path)) {
+                return new TaskJsonReader(in).readTable();
+            }
+        }
+        return TaskTable.concat(parts);
+    }
+
+    /**
+     * Byte offsets of each top-level object in file order, as start and end
+     * (exclusive) pairs. Braces inside strings are skipped, and so are
+     * objects nested inside another.
+     */
+    public static long[] objectSpans(Path path) throws IOException {
+        long[] spans = new long[1024];
+        int count = 0;
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        ByteBuffer window = ByteBuffer.allocate(SCAN_WINDOW);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long position = 0;
+            int read;
+            while ((read = channel.read(window.clear(), position)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    byte b = window.get(i);
+                    if (inString) {
+                        if (escaped) {
+                            escaped = false;
+                        } else if (b == '\\') {
+                            escaped = true;
+                        } else if (b == '"') {
+                            inString = false;
+                        }
+                    } else if (b == '"') {
+                        inString = true;
+                    } else if (b == '{' && depth++ == 0) {
+                        if (count == spans.length) {
+                            spans = Arrays.copyOf(spans, count * 2);
+                        }
+                        spans[count] = position + i;
+                    } else if (b == '}' && depth > 0 && --depth == 0) {
+                        spans[count + 1] = position + i + 1;
+                        count += 2;
+                    }
+                }
+                position += read;
+            }
+        }
+        return Arrays.copyOf(spans, count);
+    }
+
+    /** Returns chunk start offsets plus the file size, or null if the file should be read sequentially. */
+    private static long[] chunkBounds(Path path) throws IOException {
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        long size = Files.size(path);
+        if (size < PARALLEL_THRESHOLD || parallelism < 2) {
+            return null;
+        }
+
+        // A chunk is mapped as one buffer, so none may exceed 2 GB
+        int chunks = (int) Math.max(Math.min(parallelism * 2L, size / MIN_CHUNK_SIZE), size / Integer.MAX_VALUE + 1);
+        long[] bounds = new long[chunks + 1];
+        int count = 1;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (int i = 1; i < chunks; i++) {
+                long start = nextObjectStart(channel, Math.max(size / chunks * i, bounds[count - 1] + 1), size);
+                if (start < size) {
+                    bounds[count++] = start;
+                }
+            }
+        }
+        bounds[count++] = size;
+        return count > 2 ? Arrays.copyOf(bounds, count) : null;
+    }
+
+    /** Finds the first line at or after from whose first non-blank character is '{'. */
+    private static long nextObjectStart(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(SCAN_WINDOW);
+        boolean lineStart = false;
+        for (long position = from; position < size; ) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = window.get(i);
+                if (b == '\n') {
+                    lineStart = true;
+                } else if (lineStart && b == '{') {
+                    return position + i;
+                } else if (b != ' ' && b != '\t' && b != '\r') {
+                    lineStart = false;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private interface ChunkParser<T> {
+        T parse(TaskJsonReader reader) throws IOException;
+    }
+
+    /** Parses each chunk on the common pool. Returns null if any chunk could not be parsed. */
+    private static <T> List<T> parseChunks(Path path, long[] bounds, ChunkParser<T> parser) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<RecursiveTask<T>> tasks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i + 1] - bounds[i]);
+                tasks.add(new RecursiveTask<>() {
+                    @Override
+                    protected T compute() {
+                        try (Reader in = new InputStreamReader(new BufferInputStream(chunk), StandardCharsets.UTF_8)) {
+                            return parser.parse(new TaskJsonReader(in, true));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+            }
+
+            try {
+                ForkJoinPool.commonPool().invoke(new RecursiveTask<Void>() {
+                    @Override
+                    protected Void compute() {
+                        ForkJoinTask.invokeAll(tasks);
+                        return null;
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                return null;
+            }
+
+            List<T> parts = new ArrayList<>(tasks.size());
+            for (RecursiveTask<T> task : tasks) {
+                parts.add(task.join());
+            }
+            return parts;
+        }
+    }
+
+    /** Reads a chunk of a mapped file. */
+    private static class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,404 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Single-pass reader for the tasks.json format.
+ *
+ * Scans the character stream once and builds Task objects (or table rows)
+ * directly, without splitting the document or building an intermediate map
+ * per task. Objects may appear inside a top-level array or on their own;
+ * separators between objects are skipped.
+ */
+public class TaskJsonReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader in;
+    private final boolean strict;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder scratch = new StringBuilder(64);
+    private int pos;
+    private int limit;
+    private long consumed; // chars consumed before the current buffer
+
+    // Fields of the object most recently read by advance()
+    private int id;
+    private final StringBuilder description = new StringBuilder(64);
+    private boolean hasDescription;
+    private Status status;
+    private Priority priority;
+    private long createdAt;
+    private long updatedAt;
+    private String invalid; // a field value that did not parse, see parseStatus
+
+    public TaskJsonReader(Reader in) {
+        this(in, false);
+    }
+
+    /** A strict reader fails on an object without an id instead of warning and skipping it. */
+    public TaskJsonReader(Reader in, boolean strict) {
+        this.in = in;
+        this.strict = strict;
+    }
+
+    public List<Task> readAll() throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        Task task;
+        while ((task = next()) != null) {
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    /** Reads every task straight into table columns, without a Task object per row. */
+    public TaskTable readTable() throws IOException {
+        TaskTable table = new TaskTable();
+        while (advance()) {
+            table.add(id, status, priority, createdAt, updatedAt, hasDescription ? description : null);
+        }
+        return table;
+    }
+
+    /**
+     * Returns the next task in the stream, or null once the input is exhausted.
+     * Objects missing an id are reported and skipped, like the old parser did.
+     */
+    public Task next() throws IOException {
+        if (!advance()) {
+            return null;
+        }
+        return new Task(id, hasDescription ? description.toString() : null, status, priority, createdAt, updatedAt);
+    }
+
+    /** Reads the next object with an id into the current-object fields. Returns false at end of input. */
+    private boolean advance() throws IOException {
+        while (true) {
+            int c = skipWhitespace();
+            if (c == -1) {
+                return false;
+            }
+            if (c == '[' || c == ']' || c == ',') {
+                pos++;
+                continue;
+            }
+            if (c != '{') {
+                throw error("Expected '{'");
+            }
+            long start = offset();
+            if (readObject()) {
+                return true;
+            }
+            if (strict) {
+                throw new IOException("Object without an id at offset " + start);
+            }
+            System.err.println("Warning: Could not parse task at offset " + start);
+        }
+    }
+
+    private boolean readObject() throws IOException {
+        pos++; // '{'
+        id = 0;
+        boolean hasId = false;
+        hasDescription = false;
+        invalid = null;
+        status = Status.TODO;
+        priority = Priority.MEDIUM; // backward compatibility
+        createdAt = Task.NO_TIMESTAMP;
+        updatedAt = Task.NO_TIMESTAMP;
+
+        int c = skipWhitespace();
+        if (c == '}') {
+            pos++;
+            return false;
+        }
+
+        while (true) {
+            expect('"');
+            readStringContent();
+            String key = knownKey();
+            expectAfterWhitespace(':');
+            skipWhitespace();
+
+            if (key == null) {
+                skipValue();
+            } else if (key.equals("id")) {
+                if (peek() == '"') {
+                    pos++;
+                    readStringContent();
+                    id = parseInt(scratch);
+                } else {
+                    id = readInt();
+                }
+                hasId = true;
+            } else if (readNullableString()) {
+                switch (key) {
+                    case "description" -> {
+                        description.setLength(0);
+                        description.append(scratch);
+                        hasDescription = true;
+                    }
+                    case "status" -> status = parseStatus();
+                    case "priority" -> priority = parsePriority();
+                    case "createdAt" -> createdAt = parseTimestamp("createdAt");
+                    case "updatedAt" -> updatedAt = parseTimestamp("updatedAt");
+                }
+            } else if (key.equals("description")) {
+                hasDescription = false;
+            }
+
+            c = skipWhitespace();
+            if (c != ',' && c != '}') {
+                throw error("Expected ',' or '}'");
+            }
+            pos++;
+            if (c == '}') {
+                break;
+            }
+            skipWhitespace();
+        }
+
+        if (hasId && invalid != null) {
+            // The id may follow the bad field, so the message is only finished here
+            throw new IOException("Task " + id + " has an " + invalid);
+        }
+        return hasId;
+    }
+
+    /** Maps the key in scratch to its constant, avoiding a String allocation per key. */
+    private String knownKey() {
+        return switch (scratch.length()) {
+            case 2 -> matches("id") ? "id" : null;
+            case 6 -> matches("status") ? "status" : null;
+            case 8 -> matches("priority") ? "priority" : null;
+            case 9 -> matches("createdAt") ? "createdAt" : matches("updatedAt") ? "updatedAt" : null;
+            case 11 -> matches("description") ? "description" : null;
+            default -> null;
+        };
+    }
+
+    private boolean matches(String constant) {
+        return constant.contentEquals(scratch);
+    }
+
+    /** Reads a string value into scratch, returning false if the value is null. */
+    private boolean readNullableString() throws IOException {
+        int c = peek();
+        if (c == 'n') {
+            expectLiteral("null");
+            return false;
+        }
+        expect('"');
+        readStringContent();
+        return true;
+    }
+
+    /*
+     * Field parsers for the value in scratch. A value that does not parse is
+     * noted in invalid and fails the object once its id is known, rather than
+     * being replaced by a default that the next save would write back.
+     */
+
+    /** Matches the value against the enum vocabulary, without a String allocation. */
+    private Status parseStatus() {
+        Status status = Status.parse(scratch);
+        if (status == null) {
+            invalid = "unknown status: " + scratch;
+            return Status.TODO;
+        }
+        return status;
+    }
+
+    private Priority parsePriority() {
+        Priority priority = Priority.parse(scratch);
+        if (priority == null) {
+            invalid = "unknown priority: " + scratch;
+            return Priority.MEDIUM;
+        }
+        return priority;
+    }
+
+    private long parseTimestamp(String field) {
+        long seconds = Task.parseTimestamp(scratch);
+        if (seconds == Task.NO_TIMESTAMP) {
+            invalid = "invalid " + field + ": " + scratch;
+        }
+        return seconds;
+    }
+
+    /** Reads string content after the opening quote into scratch, unescaping as it goes. */
+    private void readStringContent() throws IOException {
+        scratch.setLength(0);
+        while (true) {
+            if (pos == limit && !fill()) {
+                throw error("Unterminated string");
+            }
+            int start = pos;
+            char[] buf = buffer;
+            int end = limit;
+            int i = start;
+            while (i < end) {
+                char c = buf[i];
+                if (c == '"' || c == '\\') {
+                    break;
+                }
+                i++;
+            }
+            scratch.append(buf, start, i - start);
+            pos = i;
+            if (i == end) {
+                continue;
+            }
+            pos++;
+            if (buf[i] == '"') {
+                return;
+            }
+            scratch.append(readEscape());
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int c = read();
+        return switch (c) {
+            case '"' -> '"';
+            case '\\' -> '\\';
+            case '/' -> '/';
+            case 'n' -> '\n';
+            case 'r' -> '\r';
+            case 't' -> '\t';
+            case 'b' -> '\b';
+            case 'f' -> '\f';
+            case 'u' -> {
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw error("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                yield (char) value;
+            }
+            default -> throw error("Invalid escape sequence");
+        };
+    }
+
+    private int readInt() throws IOException {
+        boolean negative = false;
+        if (peek() == '-') {
+            negative = true;
+            pos++;
+        }
+        int value = 0;
+        int digits = 0;
+        int c;
+        while ((c = peek()) >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            digits++;
+            pos++;
+        }
+        if (digits == 0) {
+            throw error("Expected number");
+        }
+        return negative ? -value : value;
+    }
+
+    private int parseInt(CharSequence chars) throws IOException {
+        try {
+            return Integer.parseInt(chars, 0, chars.length(), 10);
+        } catch (NumberFormatException e) {
+            throw error("Invalid id");
+        }
+    }
+
+    private void skipValue() throws IOException {
+        int c = peek();
+        if (c == '"') {
+            pos++;
+            readStringContent();
+        } else if (c == '{' || c == '[') {
+            int depth = 0;
+            do {
+                c = read();
+                if (c == '"') {
+                    readStringContent();
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                } else if (c == -1) {
+                    throw error("Unexpected end of input");
+                }
+            } while (depth > 0);
+        } else {
+            while ((c = peek()) != -1 && c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+                pos++;
+            }
+        }
+    }
+
+    private void expectLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (read() != literal.charAt(i)) {
+                throw error("Expected " + literal);
+            }
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        if (peek() != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+        pos++;
+    }
+
+    private void expectAfterWhitespace(char expected) throws IOException {
+        skipWhitespace();
+        expect(expected);
+    }
+
+    private int skipWhitespace() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            char c = buffer[pos];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+            pos++;
+        }
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos];
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++];
+    }
+
+    private boolean fill() throws IOException {
+        consumed += limit;
+        pos = 0;
+        limit = 0;
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+
+    private long offset() {
+        return consumed + pos;
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at offset " + offset());
+    }
+}
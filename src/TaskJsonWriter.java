@@ -0,0 +1,262 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+
+/**
+ * Streams tasks as a JSON array into a channel.
+ *
+ * Every field is encoded straight into a direct buffer that is flushed to
+ * the channel whenever it fills, so memory use does not depend on the number
+ * of tasks. Buffers come from a small shared pool rather than one per
+ * thread, since the daemon serves each request on a fresh virtual thread.
+ * Descriptions are already UTF-8 inside {@link Task} and are escaped in a
+ * single pass over those bytes; timestamps are formatted digit by digit
+ * without going through a formatter.
+ *
+ * The pretty layout is the one this tool has always written. The compact
+ * layout puts each object on its own line with no other whitespace, which
+ * makes files about a fifth smaller and still lets {@link TaskJsonLoader}
+ * split them into chunks.
+ */
+public class TaskJsonWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_FIELD_BYTES = 64; // longest run of fixed text or number written without a check
+    private static final ByteBuffer[] POOL = new ByteBuffer[4]; // idle buffers, enough for the usual concurrent writers
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[][] STATUS_NAMES = new byte[Status.values().length][];
+    private static final byte[][] PRIORITY_NAMES = new byte[Priority.values().length][];
+
+    static {
+        for (Status status : Status.values()) {
+            STATUS_NAMES[status.ordinal()] = ascii(status.getValue());
+        }
+        for (Priority priority : Priority.values()) {
+            PRIORITY_NAMES[priority.ordinal()] = ascii(priority.getName());
+        }
+    }
+
+    private static final byte[] PRETTY_ID = ascii("  {\n    \"id\": ");
+    private static final byte[] PRETTY_DESCRIPTION = ascii(",\n    \"description\": \"");
+    private static final byte[] PRETTY_STATUS = ascii("\",\n    \"status\": \"");
+    private static final byte[] PRETTY_PRIORITY = ascii("\",\n    \"priority\": \"");
+    private static final byte[] PRETTY_CREATED = ascii("\",\n    \"createdAt\": ");
+    private static final byte[] PRETTY_UPDATED = ascii(",\n    \"updatedAt\": ");
+    private static final byte[] PRETTY_END = ascii("\n  }");
+
+    private static final byte[] COMPACT_ID = ascii("{\"id\":");
+    private static final byte[] COMPACT_DESCRIPTION = ascii(",\"description\":\"");
+    private static final byte[] COMPACT_STATUS = ascii("\",\"status\":\"");
+    private static final byte[] COMPACT_PRIORITY = ascii("\",\"priority\":\"");
+    private static final byte[] COMPACT_CREATED = ascii("\",\"createdAt\":");
+    private static final byte[] COMPACT_UPDATED = ascii(",\"updatedAt\":");
+    private static final byte[] COMPACT_END = ascii("}");
+
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] EVENT_START = ascii("{\"event\":\"");
+    private static final byte[] EVENT_TASK = ascii("\",\"task\":");
+
+    private static int pooled; // buffers in POOL, which holds them at its start
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] timestamp = new byte[Task.TIMESTAMP_LENGTH];
+
+    private TaskJsonWriter(WritableByteChannel channel, ByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /** An idle pooled buffer, or a new one when every pooled buffer is in use. */
+    private static synchronized ByteBuffer takeBuffer() {
+        return pooled > 0 ? POOL[--pooled].clear() : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /** Keeps the buffer for the next writer if the pool has room; otherwise the GC frees it. */
+    private static synchronized void returnBuffer(ByteBuffer buffer) {
+        if (pooled < POOL.length) {
+            POOL[pooled++] = buffer;
+        }
+    }
+
+    /** Writes the tasks to a new or truncated file. The caller syncs it if needed. */
+    public static void write(Path path, List<Task> tasks, boolean compact) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel, tasks, compact);
+        }
+    }
+
+    /** Writes the tasks to the channel, leaving it open. */
+    public static void write(WritableByteChannel channel, List<Task> tasks, boolean compact) throws IOException {
+        ByteBuffer buffer = takeBuffer();
+        try {
+            TaskJsonWriter writer = new TaskJsonWriter(channel, buffer);
+            writer.put((byte) '[').put((byte) '\n');
+            for (int i = 0; i < tasks.size(); i++) {
+                writer.task(tasks.get(i), compact);
+                if (i < tasks.size() - 1) {
+                    writer.put((byte) ',');
+                }
+                writer.put((byte) '\n');
+            }
+            writer.put((byte) ']');
+            writer.flush();
+        } finally {
+            returnBuffer(buffer);
+        }
+    }
+
+    /**
+     * Writes one line of newline-delimited JSON for `watch --json`:
+     * {"event":"<event>","task":{...}} with the task in the compact layout.
+     */
+    public static void writeEvent(WritableByteChannel channel, String event, Task task) throws IOException {
+        ByteBuffer buffer = takeBuffer();
+        try {
+            TaskJsonWriter writer = new TaskJsonWriter(channel, buffer);
+            writer.ensure(MAX_FIELD_BYTES);
+            writer.buffer.put(EVENT_START).put(ascii(event)).put(EVENT_TASK);
+            writer.task(task, true);
+            writer.put((byte) '}').put((byte) '\n');
+            writer.flush();
+        } finally {
+            returnBuffer(buffer);
+        }
+    }
+
+    /** True if the file was written in the compact layout, so a rewrite can keep it. */
+    public static boolean isCompact(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(3);
+            channel.read(head, 0);
+            return head.position() == 3 && head.get(0) == '[' && head.get(1) == '\n' && head.get(2) == '{';
+        }
+    }
+
+    private void task(Task task, boolean compact) throws IOException {
+        ensure(MAX_FIELD_BYTES);
+        buffer.put(compact ? COMPACT_ID : PRETTY_ID);
+        putInt(task.getId());
+        buffer.put(compact ? COMPACT_DESCRIPTION : PRETTY_DESCRIPTION);
+        putEscaped(task.getDescriptionUtf8());
+        ensure(MAX_FIELD_BYTES * 2);
+        buffer.put(compact ? COMPACT_STATUS : PRETTY_STATUS);
+        buffer.put(STATUS_NAMES[task.getStatus().ordinal()]);
+        buffer.put(compact ? COMPACT_PRIORITY : PRETTY_PRIORITY);
+        buffer.put(PRIORITY_NAMES[task.getPriority().ordinal()]);
+        ensure(MAX_FIELD_BYTES * 2);
+        buffer.put(compact ? COMPACT_CREATED : PRETTY_CREATED);
+        putTimestamp(task.getCreatedAt());
+        buffer.put(compact ? COMPACT_UPDATED : PRETTY_UPDATED);
+        putTimestamp(task.getUpdatedAt());
+        buffer.put(compact ? COMPACT_END : PRETTY_END);
+    }
+
+    /** Copies UTF-8 bytes, escaping quotes, backslashes and control characters in the same pass. */
+    private void putEscaped(byte[] text) throws IOException {
+        if (text == null) {
+            return;
+        }
+        int start = 0;
+        for (int i = 0; i < text.length; i++) {
+            byte b = text[i];
+            if (b != '"' && b != '\\' && (b < 0 || b >= 0x20)) {
+                continue; // bytes of multi-byte characters are negative and never need escaping
+            }
+            putBytes(text, start, i - start);
+            ensure(6);
+            buffer.put((byte) '\\');
+            switch (b) {
+                case '"', '\\' -> buffer.put(b);
+                case '\n' -> buffer.put((byte) 'n');
+                case '\r' -> buffer.put((byte) 'r');
+                case '\t' -> buffer.put((byte) 't');
+                default -> buffer.put((byte) 'u').put((byte) '0').put((byte) '0')
+                        .put(HEX[b >> 4]).put(HEX[b & 0xF]);
+            }
+            start = i + 1;
+        }
+        putBytes(text, start, text.length - start);
+    }
+
+    private void putBytes(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int n = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, n);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    private void putInt(int value) {
+        if (value < 0) {
+            if (value == Integer.MIN_VALUE) {
+                buffer.put(ascii(Integer.toString(value)));
+                return;
+            }
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int start = buffer.position();
+        do {
+            buffer.put((byte) ('0' + value % 10));
+            value /= 10;
+        } while (value != 0);
+        // Digits went in least significant first; reverse them in place
+        for (int i = start, j = buffer.position() - 1; i < j; i++, j--) {
+            byte t = buffer.get(i);
+            buffer.put(i, buffer.get(j));
+            buffer.put(j, t);
+        }
+    }
+
+    /** Writes "yyyy-MM-dd HH:mm:ss" in quotes, or a JSON null for a missing time. */
+    private void putTimestamp(long seconds) {
+        if (seconds == Task.NO_TIMESTAMP) {
+            buffer.put(NULL);
+            return;
+        }
+        buffer.put((byte) '"');
+        if (Task.formatTimestamp(seconds, timestamp)) {
+            buffer.put(timestamp);
+        } else {
+            buffer.put(ascii(Task.formatTimestamp(seconds)));
+        }
+        buffer.put((byte) '"');
+    }
+
+    private TaskJsonWriter put(byte b) throws IOException {
+        ensure(1);
+        buffer.put(b);
+        return this;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
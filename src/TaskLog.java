@@ -0,0 +1,417 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Append-only log of task mutations kept next to the snapshot file.
+ *
+ * Each mutation is written as one tab-separated line instead of rewriting the
+ * whole snapshot. On load the log is replayed on top of the snapshot; once it
+ * grows past {@link #COMPACT_THRESHOLD} the caller folds it back into a new
+ * snapshot and clears it. Replay is idempotent, so a crash between writing the
+ * snapshot and clearing the log does not duplicate anything.
+ *
+ * Record layout (fields separated by tabs, text fields escaped):
+ *   A id status priority createdAt updatedAt description
+ *   U id updatedAt description
+ *   S id status updatedAt
+ *   P id priority updatedAt
+ *   D id
+ */
+public class TaskLog {
+    public static final long COMPACT_THRESHOLD = 1024 * 1024;
+
+    private final Path path;
+    private int maxAddedId;
+
+    public TaskLog(Path snapshotPath) {
+        this.path = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".log");
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /** Highest ID added by any record seen during the last replay, even if later deleted. */
+    public int getMaxAddedId() {
+        return maxAddedId;
+    }
+
+    public static String added(Task task) {
+        return "A\t" + task.getId() + "\t" + task.getStatus() + "\t" + task.getPriority() + "\t"
+                + timestamp(task.getCreatedAt()) + "\t" + timestamp(task.getUpdatedAt()) + "\t"
+                + escape(task.getDescription());
+    }
+
+    public static String updated(Task task) {
+        return "U\t" + task.getId() + "\t" + timestamp(task.getUpdatedAt()) + "\t" + escape(task.getDescription());
+    }
+
+    public static String statusChanged(Task task) {
+        return "S\t" + task.getId() + "\t" + task.getStatus() + "\t" + timestamp(task.getUpdatedAt());
+    }
+
+    public static String priorityChanged(Task task) {
+        return "P\t" + task.getId() + "\t" + task.getPriority() + "\t" + timestamp(task.getUpdatedAt());
+    }
+
+    public static String deleted(int id) {
+        return "D\t" + id;
+    }
+
+    public void append(String record) throws IOException {
+        appendAll(List.of(record));
+    }
+
+    /**
+     * Appends several records with a single write and syncs them to disk. A
+     * torn record left at the end by a crash is cut off first, so the new
+     * records do not run into it. Callers hold the store lock exclusively.
+     */
+    public void appendAll(List<String> records) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (String record : records) {
+            sb.append(record).append('\n');
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long end = completeLength(channel);
+            if (end < channel.size()) {
+                channel.truncate(end);
+            }
+            while (bytes.hasRemaining()) {
+                end += channel.write(bytes, end);
+            }
+            channel.force(false);
+        }
+    }
+
+    /** Length of the log up to and including its last newline. */
+    private static long completeLength(FileChannel channel) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(4096);
+        long end = channel.size();
+        while (end > 0) {
+            long start = Math.max(0, end - chunk.capacity());
+            chunk.clear().limit((int) (end - start));
+            while (chunk.hasRemaining() && channel.read(chunk, start + chunk.position()) > 0) {
+                // read until full
+            }
+            for (int i = chunk.position() - 1; i >= 0; i--) {
+                if (chunk.get(i) == '\n') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    public long size() throws IOException {
+        return Files.exists(path) ? Files.size(path) : 0;
+    }
+
+    public void clear() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Applies every complete record in the log to the given tasks. A trailing
+     * line without a newline is a torn write from a crash and is ignored.
+     */
+    public void replay(List<Task> tasks) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        String content = Files.readString(path);
+        IntIntMap byId = new IntIntMap(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            byId.put(tasks.get(i).getId(), i);
+        }
+
+        boolean deleted = false;
+        int lineStart = 0;
+        int lineEnd;
+        while ((lineEnd = content.indexOf('\n', lineStart)) >= 0) {
+            String line = content.substring(lineStart, lineEnd);
+            lineStart = lineEnd + 1;
+            if (line.isEmpty()) continue;
+
+            try {
+                deleted |= apply(line.split("\t", -1), tasks, byId);
+            } catch (RuntimeException e) {
+                System.err.println("Warning: Could not replay log record: " + line);
+            }
+        }
+
+        if (deleted) {
+            tasks.removeIf(Objects::isNull);
+        }
+    }
+
+    /** Returns the ascending IDs named by any complete record in the log. */
+    public int[] touchedIds() throws IOException {
+        if (!Files.exists(path)) {
+            return new int[0];
+        }
+
+        String content = Files.readString(path);
+        IntIntMap seen = new IntIntMap();
+        int lineStart = 0;
+        int lineEnd;
+        while ((lineEnd = content.indexOf('\n', lineStart)) >= 0) {
+            int idStart = content.indexOf('\t', lineStart) + 1;
+            int idEnd = content.indexOf('\t', idStart);
+            if (idStart > 0 && idStart < lineEnd) {
+                try {
+                    int id = Integer.parseInt(content, idStart, idEnd >= 0 && idEnd < lineEnd ? idEnd : lineEnd, 10);
+                    seen.put(id, 0);
+                } catch (NumberFormatException e) {
+                    // Reported by replay
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return seen.keys();
+    }
+
+    /** Applies every complete record in the log to the rows of a table. */
+    public void replay(TaskTable table) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        String content = Files.readString(path);
+        IntIntMap byId = new IntIntMap(table.size());
+        for (int row = 0; row < table.size(); row++) {
+            byId.put(table.id(row), row);
+        }
+
+        boolean deleted = false;
+        int lineStart = 0;
+        int lineEnd;
+        while ((lineEnd = content.indexOf('\n', lineStart)) >= 0) {
+            String line = content.substring(lineStart, lineEnd);
+            lineStart = lineEnd + 1;
+            if (line.isEmpty()) continue;
+
+            try {
+                deleted |= apply(line.split("\t", -1), table, byId);
+            } catch (RuntimeException e) {
+                System.err.println("Warning: Could not replay log record: " + line);
+            }
+        }
+
+        if (deleted) {
+            table.removeDeleted();
+        }
+    }
+
+    /**
+     * Applies a single record to tasks indexed by byId, returning true if it
+     * removed a task. Deleted tasks are nulled out in place so the ordinals in
+     * byId stay valid; the caller is responsible for dropping them.
+     */
+    public boolean apply(String record, List<Task> tasks, IntIntMap byId) {
+        return apply(record.split("\t", -1), tasks, byId);
+    }
+
+    private boolean apply(String[] fields, List<Task> tasks, IntIntMap byId) {
+        int id = Integer.parseInt(fields[1]);
+        int ordinal = byId.get(id);
+        Task task = ordinal != IntIntMap.MISSING ? tasks.get(ordinal) : null;
+
+        switch (fields[0]) {
+            case "A" -> {
+                Task added = new Task(id, unescape(fields[6]), status(fields[2]),
+                        priority(fields[3]), timestamp(fields[4]), timestamp(fields[5]));
+                maxAddedId = Math.max(maxAddedId, id);
+                if (task == null) {
+                    byId.put(id, tasks.size());
+                    tasks.add(added);
+                } else {
+                    task.setDescription(added.getDescription());
+                    task.setStatus(added.getStatus());
+                    task.setPriority(added.getPriority());
+                    task.setCreatedAt(added.getCreatedAt());
+                    task.setUpdatedAt(added.getUpdatedAt());
+                }
+            }
+            case "U" -> {
+                long updatedAt = timestamp(fields[2]);
+                String description = unescape(fields[3]);
+                if (task != null) {
+                    task.setUpdatedAt(updatedAt);
+                    task.setDescription(description);
+                }
+            }
+            case "S" -> {
+                Status status = status(fields[2]);
+                long updatedAt = timestamp(fields[3]);
+                if (task != null) {
+                    task.setStatus(status);
+                    task.setUpdatedAt(updatedAt);
+                }
+            }
+            case "P" -> {
+                Priority priority = priority(fields[2]);
+                long updatedAt = timestamp(fields[3]);
+                if (task != null) {
+                    task.setPriority(priority);
+                    task.setUpdatedAt(updatedAt);
+                }
+            }
+            case "D" -> {
+                if (byId.remove(id) == IntIntMap.MISSING) {
+                    return false;
+                }
+                tasks.set(ordinal, null);
+                return true;
+            }
+            default -> throw new IllegalArgumentException("Unknown record type: " + fields[0]);
+        }
+        return false;
+    }
+
+    /** Table counterpart of {@link #apply(String[], List, IntIntMap)}; deleted rows are only marked. */
+    private boolean apply(String[] fields, TaskTable table, IntIntMap byId) {
+        int id = Integer.parseInt(fields[1]);
+        int row = byId.get(id);
+
+        switch (fields[0]) {
+            case "A" -> {
+                Status status = status(fields[2]);
+                Priority priority = priority(fields[3]);
+                long createdAt = timestamp(fields[4]);
+                long updatedAt = timestamp(fields[5]);
+                String description = unescape(fields[6]);
+                maxAddedId = Math.max(maxAddedId, id);
+                if (row == IntIntMap.MISSING) {
+                    byId.put(id, table.add(id, status, priority, createdAt, updatedAt, description));
+                } else {
+                    table.set(row, status, priority, createdAt, updatedAt, description);
+                }
+            }
+            case "U" -> {
+                long updatedAt = timestamp(fields[2]);
+                String description = unescape(fields[3]);
+                if (row != IntIntMap.MISSING) {
+                    table.setUpdatedAt(row, updatedAt);
+                    table.setDescription(row, description);
+                }
+            }
+            case "S" -> {
+                Status status = status(fields[2]);
+                long updatedAt = timestamp(fields[3]);
+                if (row != IntIntMap.MISSING) {
+                    table.setStatus(row, status);
+                    table.setUpdatedAt(row, updatedAt);
+                }
+            }
+            case "P" -> {
+                Priority priority = priority(fields[2]);
+                long updatedAt = timestamp(fields[3]);
+                if (row != IntIntMap.MISSING) {
+                    table.setPriority(row, priority);
+                    table.setUpdatedAt(row, updatedAt);
+                }
+            }
+            case "D" -> {
+                if (byId.remove(id) == IntIntMap.MISSING) {
+                    return false;
+                }
+                table.delete(row);
+                return true;
+            }
+            default -> throw new IllegalArgumentException("Unknown record type: " + fields[0]);
+        }
+        return false;
+    }
+
+    /** Timestamps are logged in the same text form as the snapshot; an empty field means none. */
+    private static String timestamp(long seconds) {
+        return seconds == Task.NO_TIMESTAMP ? "" : Task.formatTimestamp(seconds);
+    }
+
+    /*
+     * Field parsers for replay. Unlike the snapshot loaders they do not fall
+     * back to defaults: a field that does not parse means a damaged record,
+     * which replay reports and skips rather than applying a guess.
+     */
+
+    private static Status status(String field) {
+        Status status = Status.parse(field);
+        if (status == null) {
+            throw new IllegalArgumentException("Unknown status: " + field);
+        }
+        return status;
+    }
+
+    private static Priority priority(String field) {
+        Priority priority = Priority.parse(field);
+        if (priority == null) {
+            throw new IllegalArgumentException("Unknown priority: " + field);
+        }
+        return priority;
+    }
+
+    private static long timestamp(String field) {
+        long seconds = Task.parseTimestamp(field);
+        if (seconds == Task.NO_TIMESTAMP && !field.isEmpty()) {
+            throw new IllegalArgumentException("Invalid timestamp: " + field);
+        }
+        return seconds;
+    }
+
+    private static String escape(String str) {
+        if (str == null) {
+            return "";
+        }
+        StringBuilder sb = null;
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            String replacement = switch (c) {
+                case '\\' -> "\\\\";
+                case '\t' -> "\\t";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                default -> null;
+            };
+            if (replacement != null && sb == null) {
+                sb = new StringBuilder(str.length() + 8).append(str, 0, i);
+            }
+            if (sb != null) {
+                if (replacement != null) sb.append(replacement);
+                else sb.append(c);
+            }
+        }
+        return sb != null ? sb.toString() : str;
+    }
+
+    private static String unescape(String str) {
+        if (str.indexOf('\\') < 0) {
+            return str;
+        }
+        StringBuilder sb = new StringBuilder(str.length());
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == '\\' && i + 1 < str.length()) {
+                char next = str.charAt(++i);
+                sb.append(switch (next) {
+                    case 't' -> '\t';
+                    case 'n' -> '\n';
+                    case 'r' -> '\r';
+                    default -> next;
+                });
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
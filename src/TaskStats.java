@@ -0,0 +1,238 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Rollup counters behind the stats command, kept next to the snapshot as
+ * "<snapshot>.stats".
+ *
+ * The file holds task counts per status and priority, done tasks per day of
+ * completion and a histogram of the time from creation to completion, so a
+ * report reads a few hundred buckets instead of every task. It is built on
+ * first use; after that every mutation moves the changed task out of the
+ * buckets it was in and into its new ones, and saving a snapshot rebuilds
+ * it. A done task counts on the day of its latest transition to done in
+ * the task history, which later edits do not move; a task done before the
+ * history was kept counts on the day of its updatedAt until it is first
+ * edited, when that day is recorded in the history. Tasks without a
+ * timestamp are counted but stay out of the day and lead-time buckets.
+ *
+ * Layout (big-endian ints):
+ *   0  magic "TTS1"   4  version
+ *   8  counts by status then priority (9 ints)
+ *      lead-time histogram (LEAD_BUCKETS ints)
+ *      day count, then (epoch day, done tasks) pairs in ascending day order
+ */
+public class TaskStats {
+    private static final int MAGIC = 0x54545331; // "TTS1"
+    private static final int VERSION = 2; // 1 dated completions by updatedAt
+    private static final int LEAD_BUCKETS = 128; // four per doubling, up to about 136 years
+    private static final int SECONDS_PER_DAY = 86400;
+
+    private final int[][] counts = new int[Status.values().length][Priority.values().length];
+    private final int[] leadTimes = new int[LEAD_BUCKETS];
+    private final TreeMap<Integer, Integer> doneByDay = new TreeMap<>();
+
+    public static Path pathFor(Path snapshotPath) {
+        return snapshotPath.resolveSibling(snapshotPath.getFileName() + ".stats");
+    }
+
+    /**
+     * Computes the rollups for every row of the table, in parallel across
+     * rows. Completions maps task IDs to when they were done, as read by
+     * {@link TaskHistory#completions}; other done tasks fall back to updatedAt.
+     */
+    public static TaskStats compute(TaskTable table, Map<Integer, Long> completions) {
+        return IntStream.range(0, table.size()).parallel().collect(TaskStats::new,
+                (stats, row) -> stats.add(table.status(row), table.priority(row), table.createdAt(row),
+                        completions.getOrDefault(table.id(row), table.updatedAt(row)), 1),
+                TaskStats::merge);
+    }
+
+    public static TaskStats compute(List<Task> tasks, Map<Integer, Long> completions) {
+        TaskStats stats = new TaskStats();
+        for (Task task : tasks) {
+            stats.add(task.getStatus(), task.getPriority(), task.getCreatedAt(),
+                    completions.getOrDefault(task.getId(), task.getUpdatedAt()), 1);
+        }
+        return stats;
+    }
+
+    /** Reads the rollups kept for the snapshot, or returns null if there are none. */
+    public static TaskStats read(Path snapshotPath) throws IOException {
+        Path path = pathFor(snapshotPath);
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path));
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                return null;
+            }
+            TaskStats stats = new TaskStats();
+            for (int[] byPriority : stats.counts) {
+                for (int i = 0; i < byPriority.length; i++) {
+                    byPriority[i] = in.getInt();
+                }
+            }
+            for (int i = 0; i < LEAD_BUCKETS; i++) {
+                stats.leadTimes[i] = in.getInt();
+            }
+            int days = in.getInt();
+            for (int i = 0; i < days; i++) {
+                stats.doneByDay.put(in.getInt(), in.getInt());
+            }
+            return stats;
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid stats file: " + path);
+        }
+    }
+
+    /**
+     * Replaces the file next to the snapshot. It is not synced: rollups lost
+     * in a crash are rebuilt by `stats --rebuild`.
+     */
+    public void write(Path snapshotPath) throws IOException {
+        int size = 4 * (3 + counts.length * counts[0].length + LEAD_BUCKETS + 2 * doneByDay.size());
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC).putInt(VERSION);
+        for (int[] byPriority : counts) {
+            for (int count : byPriority) {
+                out.putInt(count);
+            }
+        }
+        for (int count : leadTimes) {
+            out.putInt(count);
+        }
+        out.putInt(doneByDay.size());
+        for (Map.Entry<Integer, Integer> day : doneByDay.entrySet()) {
+            out.putInt(day.getKey()).putInt(day.getValue());
+        }
+        out.flip();
+
+        // Reports build the rollups under a shared lock, so each writes a temp file of its own
+        Path path = pathFor(snapshotPath).toAbsolutePath();
+        Path temp = Files.createTempFile(path.getParent(), path.getFileName() + ".", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Moves a task from the buckets of its old state to those of its new one;
+     * either may be null. A task that keeps its status keeps its completion
+     * day. One that stops being done is taken off the day of its updatedAt,
+     * so the caller passes it dated at its completion.
+     */
+    public void apply(Task before, Task after) {
+        if (before != null && after != null && before.getStatus() == after.getStatus()) {
+            int[] byPriority = counts[before.getStatus().ordinal()];
+            byPriority[before.getPriority().ordinal()]--;
+            byPriority[after.getPriority().ordinal()]++;
+            return;
+        }
+        if (before != null) {
+            add(before.getStatus(), before.getPriority(), before.getCreatedAt(), before.getUpdatedAt(), -1);
+        }
+        if (after != null) {
+            add(after.getStatus(), after.getPriority(), after.getCreatedAt(), after.getUpdatedAt(), 1);
+        }
+    }
+
+    public TaskStats merge(TaskStats other) {
+        for (int s = 0; s < counts.length; s++) {
+            for (int p = 0; p < counts[s].length; p++) {
+                counts[s][p] += other.counts[s][p];
+            }
+        }
+        for (int i = 0; i < LEAD_BUCKETS; i++) {
+            leadTimes[i] += other.leadTimes[i];
+        }
+        other.doneByDay.forEach((day, count) -> doneByDay.merge(day, count, Integer::sum));
+        return this;
+    }
+
+    public int count(Status status, Priority priority) {
+        return counts[status.ordinal()][priority.ordinal()];
+    }
+
+    public int total() {
+        int total = 0;
+        for (int[] byPriority : counts) {
+            for (int count : byPriority) {
+                total += count;
+            }
+        }
+        return total;
+    }
+
+    /** Done tasks by the epoch day they were completed, in day order. */
+    public NavigableMap<Integer, Integer> getDoneByDay() {
+        return Collections.unmodifiableNavigableMap(doneByDay);
+    }
+
+    /**
+     * Median seconds from creation to completion over the done tasks, to
+     * within the histogram's resolution of about a fifth; -1 if none are done.
+     */
+    public long medianLeadSeconds() {
+        int done = 0;
+        for (int count : leadTimes) {
+            done += count;
+        }
+        if (done == 0) {
+            return -1;
+        }
+
+        int seen = 0;
+        for (int bucket = 0; bucket < LEAD_BUCKETS; bucket++) {
+            seen += leadTimes[bucket];
+            if (seen * 2L >= done) {
+                return (lowerBound(bucket) + lowerBound(bucket + 1)) / 2;
+            }
+        }
+        return lowerBound(LEAD_BUCKETS);
+    }
+
+    private void add(Status status, Priority priority, long createdAt, long completedAt, int delta) {
+        counts[status.ordinal()][priority.ordinal()] += delta;
+        if (status != Status.DONE || completedAt == Task.NO_TIMESTAMP) {
+            return;
+        }
+        if (createdAt != Task.NO_TIMESTAMP) {
+            leadTimes[leadBucket(completedAt - createdAt)] += delta;
+        }
+        doneByDay.merge((int) Math.floorDiv(completedAt, SECONDS_PER_DAY), delta,
+                (a, b) -> a + b != 0 ? a + b : null);
+    }
+
+    /** Bucket 0 holds zero; after that each doubling of seconds spans four buckets. */
+    private static int leadBucket(long seconds) {
+        if (seconds <= 0) {
+            return 0;
+        }
+        int log = 63 - Long.numberOfLeadingZeros(seconds);
+        int quarter = log >= 2 ? (int) (seconds >>> (log - 2)) & 3 : 0;
+        return Math.min(1 + log * 4 + quarter, LEAD_BUCKETS - 1);
+    }
+
+    private static long lowerBound(int bucket) {
+        if (bucket == 0) {
+            return 0;
+        }
+        int log = (bucket - 1) / 4;
+        int quarter = (bucket - 1) % 4;
+        return ((4L + quarter) << log) / 4;
+    }
+}
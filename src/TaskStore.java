@@ -0,0 +1,67 @@
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * In-memory copy of a task store. `serve` keeps one resident for its whole
+ * run and `batch` for the length of the batch, and every command run there,
+ * bulk changes included, reads and changes it. `watch` keeps one as the
+ * state it diffs each change against.
+ *
+ * Mutations are applied with the same records that are appended to the change
+ * log, so memory and disk cannot disagree about what a record means. Deleted
+ * tasks leave a null slot until more than half the slots are dead, which keeps
+ * ID lookups valid without shifting the list on every delete.
+ */
+public class TaskStore {
+    private final TaskLog log;
+    private final List<Task> tasks;
+    private IntIntMap byId;
+    private int nextId;
+    private int deleted;
+
+    public TaskStore(Path snapshotPath, List<Task> tasks, int nextId) {
+        this.log = new TaskLog(snapshotPath);
+        this.tasks = new ArrayList<>(tasks);
+        this.nextId = nextId;
+        reindex();
+    }
+
+    public Task get(int id) {
+        int ordinal = byId.get(id);
+        return ordinal != IntIntMap.MISSING ? tasks.get(ordinal) : null;
+    }
+
+    public int nextId() {
+        return nextId;
+    }
+
+    /** Returns the live tasks matching the filter. */
+    public List<Task> list(TaskFilter filter) {
+        List<Task> result = new ArrayList<>();
+        for (Task task : tasks) {
+            if (task == null) continue;
+            if (!filter.matches(task)) continue;
+            result.add(task);
+        }
+        return result;
+    }
+
+    public void apply(String record) {
+        if (log.apply(record, tasks, byId)) {
+            deleted++;
+            if (deleted * 2 > tasks.size()) {
+                tasks.removeIf(Objects::isNull);
+                reindex();
+            }
+        }
+        nextId = Math.max(nextId, log.getMaxAddedId() + 1);
+    }
+
+    private void reindex() {
+        byId = new IntIntMap(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            byId.put(tasks.get(i).getId(), i);
+        }
+        deleted = 0;
+    }
+}
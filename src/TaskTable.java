@@ -0,0 +1,392 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Column-oriented set of tasks for scans over large stores.
+ *
+ * Each field lives in its own primitive array indexed by row, and every
+ * description is UTF-8 in one shared byte arena, so a million rows are a
+ * handful of arrays rather than a million objects. Filters and counts walk the
+ * code arrays directly; a {@link Task} is only built for a row that is printed.
+ * When the arena is a snapshot's mapped string section, descriptions set later
+ * go to a small heap overflow arena instead, flagged in the row's offset.
+ */
+public class TaskTable {
+    private static final byte DELETED = -1; // status code of a row removed by the log
+    private static final int OVERFLOW = Integer.MIN_VALUE; // offset bit of a description in the overflow arena
+
+    private int size;
+    private int[] ids;
+    private byte[] statuses;
+    private byte[] priorities;
+    private long[] createdAt;
+    private long[] updatedAt;
+    private int[] descriptionOffsets;
+    private int[] descriptionLengths; // -1 for a null description
+    private ByteBuffer arena; // read-only when it is a snapshot's mapped string section
+    private int arenaSize;
+    private ByteBuffer overflow; // null until a description is set while the arena is read-only
+    private int overflowSize;
+
+    public TaskTable() {
+        this(16, 1024);
+    }
+
+    public TaskTable(int expectedRows, int expectedArenaBytes) {
+        ids = new int[expectedRows];
+        statuses = new byte[expectedRows];
+        priorities = new byte[expectedRows];
+        createdAt = new long[expectedRows];
+        updatedAt = new long[expectedRows];
+        descriptionOffsets = new int[expectedRows];
+        descriptionLengths = new int[expectedRows];
+        arena = ByteBuffer.allocate(Math.max(expectedArenaBytes, 16));
+    }
+
+    /**
+     * Adopts arrays decoded from a binary snapshot. The arena is the snapshot's
+     * string section, which is never copied; changed descriptions go to the overflow arena.
+     */
+    TaskTable(int size, int[] ids, byte[] statuses, byte[] priorities, long[] createdAt, long[] updatedAt,
+              int[] descriptionOffsets, int[] descriptionLengths, ByteBuffer arena) {
+        this.size = size;
+        this.ids = ids;
+        this.statuses = statuses;
+        this.priorities = priorities;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.descriptionOffsets = descriptionOffsets;
+        this.descriptionLengths = descriptionLengths;
+        this.arena = arena;
+        this.arenaSize = arena.capacity();
+    }
+
+    public static TaskTable of(List<Task> tasks) {
+        TaskTable table = new TaskTable(Math.max(tasks.size(), 16), tasks.size() * 32);
+        for (Task task : tasks) {
+            table.add(task.getId(), task.getStatus(), task.getPriority(), task.getCreatedAt(), task.getUpdatedAt(),
+                    task.getDescription());
+        }
+        return table;
+    }
+
+    /**
+     * Appends the rows of each table in turn, as one table. Only the rows' own
+     * description bytes are copied: a part read from a binary snapshot maps
+     * the whole string section, most of it for rows it did not select.
+     */
+    public static TaskTable concat(List<TaskTable> parts) throws IOException {
+        int rows = 0;
+        long arenaBytes = 0;
+        for (TaskTable part : parts) {
+            rows += part.size;
+            for (int row = 0; row < part.size; row++) {
+                arenaBytes += Math.max(part.descriptionLengths[row], 0);
+            }
+        }
+        if (arenaBytes > Integer.MAX_VALUE) {
+            throw new IOException("Descriptions of " + rows + " tasks take " + arenaBytes
+                    + " bytes, more than one table can hold");
+        }
+
+        TaskTable table = new TaskTable(Math.max(rows, 16), (int) arenaBytes);
+        byte[] bytes = table.arena.array();
+        for (TaskTable part : parts) {
+            int base = table.size;
+            System.arraycopy(part.ids, 0, table.ids, base, part.size);
+            System.arraycopy(part.statuses, 0, table.statuses, base, part.size);
+            System.arraycopy(part.priorities, 0, table.priorities, base, part.size);
+            System.arraycopy(part.createdAt, 0, table.createdAt, base, part.size);
+            System.arraycopy(part.updatedAt, 0, table.updatedAt, base, part.size);
+            System.arraycopy(part.descriptionLengths, 0, table.descriptionLengths, base, part.size);
+            for (int row = 0; row < part.size; row++) {
+                int length = part.descriptionLengths[row];
+                int offset = part.descriptionOffsets[row];
+                if (length < 0) {
+                    table.descriptionOffsets[base + row] = 0;
+                    continue;
+                }
+                (offset < 0 ? part.overflow : part.arena).get(offset & ~OVERFLOW, bytes, table.arenaSize, length);
+                table.descriptionOffsets[base + row] = table.arenaSize;
+                table.arenaSize += length;
+            }
+            table.size += part.size;
+        }
+        return table;
+    }
+
+    /**
+     * Combines tables whose rows are each in ascending ID order, such as the
+     * shards of a store, into one table in ascending ID order.
+     */
+    public static TaskTable merge(List<TaskTable> parts) throws IOException {
+        TaskTable table = concat(parts);
+        int[] next = new int[parts.size()];
+        int[] end = new int[parts.size()];
+        for (int p = 0, row = 0; p < parts.size(); p++) {
+            next[p] = row;
+            row += parts.get(p).size;
+            end[p] = row;
+        }
+
+        // Shard counts are small, so picking the lowest head by a linear scan beats a heap
+        int[] order = new int[table.size];
+        for (int i = 0; i < order.length; i++) {
+            int best = -1;
+            for (int p = 0; p < next.length; p++) {
+                if (next[p] < end[p] && (best < 0 || table.ids[next[p]] < table.ids[next[best]])) {
+                    best = p;
+                }
+            }
+            order[i] = next[best]++;
+        }
+        table.reorder(order);
+        return table;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Appends a row and returns its index. */
+    public int add(int id, Status status, Priority priority, long created, long updated, CharSequence description) {
+        if (size == ids.length) {
+            grow(Math.max(16, size * 2));
+        }
+        int row = size++;
+        ids[row] = id;
+        set(row, status, priority, created, updated, description);
+        return row;
+    }
+
+    /** Overwrites every field of a row except its ID. */
+    public void set(int row, Status status, Priority priority, long created, long updated, CharSequence description) {
+        statuses[row] = (byte) status.ordinal();
+        priorities[row] = (byte) priority.getValue();
+        createdAt[row] = created;
+        updatedAt[row] = updated;
+        setDescription(row, description);
+    }
+
+    public int id(int row) {
+        return ids[row];
+    }
+
+    public Status status(int row) {
+        return Status.fromCode(statuses[row]);
+    }
+
+    public Priority priority(int row) {
+        return Priority.fromValue(priorities[row]);
+    }
+
+    public long createdAt(int row) {
+        return createdAt[row];
+    }
+
+    public long updatedAt(int row) {
+        return updatedAt[row];
+    }
+
+    public String description(int row) {
+        int length = descriptionLengths[row];
+        if (length < 0) {
+            return null;
+        }
+        int offset = descriptionOffsets[row];
+        byte[] bytes = new byte[length];
+        (offset < 0 ? overflow : arena).get(offset & ~OVERFLOW, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Materializes one row. */
+    public Task task(int row) {
+        return new Task(ids[row], description(row), status(row), priority(row), createdAt[row], updatedAt[row]);
+    }
+
+    public void setStatus(int row, Status status) {
+        statuses[row] = (byte) status.ordinal();
+    }
+
+    public void setPriority(int row, Priority priority) {
+        priorities[row] = (byte) priority.getValue();
+    }
+
+    public void setUpdatedAt(int row, long updated) {
+        updatedAt[row] = updated;
+    }
+
+    /**
+     * Appends the new text to the arena, or to the overflow arena if the arena
+     * is mapped; the old bytes stay behind until the table is dropped.
+     */
+    public void setDescription(int row, CharSequence description) {
+        if (description == null) {
+            descriptionOffsets[row] = 0;
+            descriptionLengths[row] = -1;
+            return;
+        }
+        boolean spill = arena.isReadOnly();
+        descriptionOffsets[row] = spill ? overflowSize | OVERFLOW : arenaSize;
+        descriptionLengths[row] = appendUtf8(description, spill);
+    }
+
+    /** Marks a row as deleted. Call {@link #removeDeleted()} before scanning the table. */
+    public void delete(int row) {
+        statuses[row] = DELETED;
+    }
+
+    /** Drops deleted rows, keeping the order of the rest. */
+    public void removeDeleted() {
+        int kept = 0;
+        for (int row = 0; row < size; row++) {
+            if (statuses[row] == DELETED) continue;
+            ids[kept] = ids[row];
+            statuses[kept] = statuses[row];
+            priorities[kept] = priorities[row];
+            createdAt[kept] = createdAt[row];
+            updatedAt[kept] = updatedAt[row];
+            descriptionOffsets[kept] = descriptionOffsets[row];
+            descriptionLengths[kept] = descriptionLengths[row];
+            kept++;
+        }
+        size = kept;
+    }
+
+    /** Returns the rows matching the filter, in table order. */
+    public int[] select(TaskFilter filter) {
+        int statusCode = filter.getStatus() != null ? filter.getStatus().ordinal() : -1;
+        int priorityCode = filter.getPriority() != null ? filter.getPriority().getValue() : -1;
+        long createdFrom = filter.getCreatedFrom();
+        long createdTo = filter.getCreatedTo();
+        long updatedFrom = filter.getUpdatedFrom();
+        long updatedTo = filter.getUpdatedTo();
+        byte[] statuses = this.statuses;
+        byte[] priorities = this.priorities;
+        long[] createdAt = this.createdAt;
+        long[] updatedAt = this.updatedAt;
+
+        int[] rows = new int[size];
+        int matched = 0;
+        for (int row = 0; row < size; row++) {
+            // Branch-free: always store the row, only advance past it on a match
+            rows[matched] = row;
+            boolean statusMatch = statusCode < 0 | statuses[row] == statusCode;
+            boolean priorityMatch = priorityCode < 0 | priorities[row] == priorityCode;
+            boolean createdMatch = createdAt[row] >= createdFrom & createdAt[row] <= createdTo;
+            boolean updatedMatch = updatedAt[row] >= updatedFrom & updatedAt[row] <= updatedTo;
+            matched += statusMatch & priorityMatch & createdMatch & updatedMatch ? 1 : 0;
+        }
+        return Arrays.copyOf(rows, matched);
+    }
+
+    /** Counts the given rows by status ordinal. */
+    public int[] countStatuses(int[] rows) {
+        int[] counts = new int[Status.values().length];
+        for (int i = 0; i < rows.length; i++) {
+            counts[statuses[rows[i]]]++;
+        }
+        return counts;
+    }
+
+    /** Counts the given rows by priority ordinal. */
+    public int[] countPriorities(int[] rows) {
+        int[] counts = new int[Priority.values().length];
+        for (int i = 0; i < rows.length; i++) {
+            counts[priorities[rows[i]] - 1]++;
+        }
+        return counts;
+    }
+
+    /** Priority value (1..3) of a row, without going through the enum. */
+    public int priorityValue(int row) {
+        return priorities[row];
+    }
+
+    public boolean isDone(int row) {
+        return statuses[row] == Status.DONE.ordinal();
+    }
+
+    private int appendUtf8(CharSequence text, boolean spill) {
+        ByteBuffer target = spill ? overflow : arena;
+        int start = spill ? overflowSize : arenaSize;
+        int end = start;
+        int length = text.length();
+        target = ensure(target, end + length);
+        int i = 0;
+        // ASCII fast path, then hand the rest to the JDK encoder
+        for (; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) break;
+            target.put(end++, (byte) c);
+        }
+        if (i < length) {
+            byte[] rest = text.subSequence(i, length).toString().getBytes(StandardCharsets.UTF_8);
+            target = ensure(target, end + rest.length);
+            target.put(end, rest);
+            end += rest.length;
+        }
+        if (spill) {
+            overflow = target;
+            overflowSize = end;
+        } else {
+            arena = target;
+            arenaSize = end;
+        }
+        return end - start;
+    }
+
+    /** Returns the buffer, or a larger copy of it, with room for the given number of bytes. */
+    private static ByteBuffer ensure(ByteBuffer buffer, int required) {
+        if (buffer == null) {
+            return ByteBuffer.allocate(Math.max(required, 256));
+        }
+        if (required <= buffer.capacity()) {
+            return buffer;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(required, buffer.capacity() * 2));
+        grown.put(0, buffer, 0, buffer.capacity());
+        return grown;
+    }
+
+    /** Rearranges the rows so that row i becomes the old row order[i]. */
+    private void reorder(int[] order) {
+        int[] ids = new int[order.length];
+        byte[] statuses = new byte[order.length];
+        byte[] priorities = new byte[order.length];
+        long[] createdAt = new long[order.length];
+        long[] updatedAt = new long[order.length];
+        int[] descriptionOffsets = new int[order.length];
+        int[] descriptionLengths = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            int row = order[i];
+            ids[i] = this.ids[row];
+            statuses[i] = this.statuses[row];
+            priorities[i] = this.priorities[row];
+            createdAt[i] = this.createdAt[row];
+            updatedAt[i] = this.updatedAt[row];
+            descriptionOffsets[i] = this.descriptionOffsets[row];
+            descriptionLengths[i] = this.descriptionLengths[row];
+        }
+        this.ids = ids;
+        this.statuses = statuses;
+        this.priorities = priorities;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.descriptionOffsets = descriptionOffsets;
+        this.descriptionLengths = descriptionLengths;
+        this.size = order.length;
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        createdAt = Arrays.copyOf(createdAt, capacity);
+        updatedAt = Arrays.copyOf(updatedAt, capacity);
+        descriptionOffsets = Arrays.copyOf(descriptionOffsets, capacity);
+        descriptionLengths = Arrays.copyOf(descriptionLengths, capacity);
+    }
+}
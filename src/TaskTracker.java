@@ -1,24 +1,87 @@
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.*;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class TaskTracker {
     private static final String TASKS_FILE = "tasks.json";
-    private static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
-    private static final Set<String> VALID_PRIORITIES = Set.of("high", "medium", "low");
+    private static final String RULE = "─".repeat(120);
+    private static final long METRICS_INTERVAL_MILLIS = 10_000;
+    private static final String INVALID_TIMESTAMP = "Invalid timestamp. Use yyyy-MM-dd or 'yyyy-MM-dd HH:mm:ss'";
+
+    private static Path tasksPath = Paths.get(TASKS_FILE);
+    private static TaskStore resident; // set while serving or running a batch
+    private static List<String> pendingRecords; // set while running a batch
+    private static List<Task> pendingBefore, pendingAfter; // batch stats changes, written after the log records
+    private static List<TaskHistory.Event> pendingTransitions; // batch history events, written after the log records
+    private static ShardManifest shards; // set while a command spans every shard of a sharded store
+    private static int reservedId; // set while adding to one shard of a sharded store
+    private static Path manifestPath; // set while a command runs against one shard of a sharded store
 
     public static void main(String[] args) {
+        boolean timings = args.length > 0 && args[0].equals("--timings");
+        if (timings) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        if (args.length >= 2 && args[0].equals("--store")) {
+            tasksPath = Paths.get(args[1]);
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+        if (args.length > 0 && args[0].equals("--timings")) {
+            timings = true;
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+
         if (args.length == 0) {
             printUsage();
             return;
         }
+        if (timings) {
+            // Passed on as the first argument, which execute strips again here or in the daemon
+            String[] traced = new String[args.length + 1];
+            traced[0] = "--timings";
+            System.arraycopy(args, 0, traced, 1, args.length);
+            args = traced;
+        }
 
-        try {
-            String command = args[0].toLowerCase();
+        Path socketPath = TaskDaemon.socketPath(tasksPath);
+        String command = args[args[0].equals("--timings") && args.length > 1 ? 1 : 0];
+        // Serving and watching run here; a watch forwarded to the daemon would block it
+        if (!command.equalsIgnoreCase("serve") && !command.equalsIgnoreCase("watch") && Files.exists(socketPath)) {
+            try {
+                args = forwardableArgs(args);
+                if (TaskDaemon.forward(socketPath, args)) {
+                    return;
+                }
+            } catch (IOException e) {
+                System.err.println("Error: " + e.getMessage());
+                return;
+            }
+        }
+
+        execute(args);
+    }
+
+    /** Runs a single command against the store, either directly or inside the daemon. */
+    static void execute(String[] args) {
+        boolean timings = args[0].equals("--timings");
+        if (timings) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+            if (args.length == 0) {
+                printUsage();
+                return;
+            }
+            Metrics.startTrace();
+        }
+        String command = args[0].toLowerCase();
+        Path storePath = tasksPath;
 
+        try (Metrics.Stopwatch timer = Metrics.time("command." + canonicalCommand(command));
+             StoreLock lock = lockFor(command);
+             StoreLock shardLock = ShardManifest.isManifest(tasksPath) ? routeSharded(command, args) : null) {
             switch (command) {
                 case "add", "a":
                     handleAdd(args);
@@ -41,15 +104,159 @@ public class TaskTracker {
                 case "priority", "p":
                     handleSetPriority(args);
                     break;
+                case "show", "s":
+                    handleShow(args);
+                    break;
+                case "next", "n":
+                    handleNext(args);
+                    break;
+                case "search":
+                    handleSearch(args);
+                    break;
+                case "changes":
+                    handleChanges(args);
+                    break;
+                case "history":
+                    handleHistory(args);
+                    break;
+                case "cycle-time":
+                    handleCycleTime(args);
+                    break;
+                case "stats":
+                    handleStats(args);
+                    break;
+                case "compact":
+                    handleCompact(args);
+                    break;
+                case "export":
+                    handleExport(args);
+                    break;
+                case "import":
+                    handleImport(args);
+                    break;
+                case "shard":
+                    handleShard(args);
+                    break;
+                case "batch", "b":
+                    handleBatch(args);
+                    break;
+                case "watch":
+                    handleWatch(args);
+                    break;
+                case "serve":
+                    handleServe();
+                    break;
                 default:
                     System.err.println("Unknown command: " + command);
                     printUsage();
             }
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
+        } finally {
+            tasksPath = storePath;
+            shards = null;
+            reservedId = 0;
+            manifestPath = null;
+            if (timings) {
+                System.err.print(Metrics.endTrace());
+            }
         }
     }
 
+    /** Full name of a command given by its alias, so metrics are not split between the two. */
+    private static String canonicalCommand(String command) {
+        return switch (command) {
+            case "a" -> "add";
+            case "u" -> "update";
+            case "d" -> "delete";
+            case "mip" -> "mark-in-progress";
+            case "md" -> "mark-done";
+            case "l" -> "list";
+            case "p" -> "priority";
+            case "s" -> "show";
+            case "n" -> "next";
+            case "b" -> "batch";
+            default -> command;
+        };
+    }
+
+    /**
+     * Readers share the store lock and writers hold it exclusively for their
+     * whole read-modify-write cycle. Returns null for commands that need none.
+     */
+    private static StoreLock lockFor(String command) throws IOException {
+        try (Metrics.Stopwatch timer = Metrics.time("lock")) {
+            if (ShardManifest.isManifest(tasksPath)) {
+                // Shards are locked one by one; the manifest lock only keeps resharding apart from the rest
+                return StoreLock.acquire(tasksPath, !command.equals("shard") && !command.equals("import"));
+            }
+            return switch (command) {
+                case "list", "l", "show", "s", "next", "n", "search", "changes", "stats", "history", "cycle-time", "export" ->
+                        StoreLock.acquire(tasksPath, true);
+                case "add", "a", "update", "u", "delete", "d", "mark-in-progress", "mip", "mark-done", "md",
+                     "priority", "p", "compact", "import", "shard", "batch", "b" -> StoreLock.acquire(tasksPath, false);
+                default -> null; // serve locks only while loading
+            };
+        }
+    }
+
+    /**
+     * Points a command at the part of a sharded store it needs. A command
+     * naming one task runs against that task's shard as if it were the whole
+     * store, and returns the shard's lock; one that reads or rewrites every
+     * task runs with {@link #shards} set and locks shards as it visits them.
+     */
+    private static StoreLock routeSharded(String command, String[] args) throws IOException {
+        ShardManifest manifest = ShardManifest.read(tasksPath);
+        String name = canonicalCommand(command);
+        if (manifest == null) {
+            if (name.equals("shard")) {
+                return null; // creates an empty sharded store
+            }
+            throw new IOException("Shard manifest not found: " + tasksPath + " (create one with 'shard <n>')");
+        }
+
+        manifestPath = tasksPath;
+        switch (name) {
+            case "add":
+                // Nothing to add without a description, so do not use up an ID
+                int id = 0;
+                if (args.length > 1 && !args[1].trim().isEmpty()) {
+                    id = reservedId = ShardManifest.allocateId(tasksPath);
+                }
+                tasksPath = manifest.shardFor(id);
+                return StoreLock.acquireSeparate(tasksPath, false);
+            case "delete", "mark-in-progress", "mark-done", "priority":
+                if (args.length > 1 && BulkQuery.isQuery(args[1])) {
+                    shards = manifest; // a query may select tasks in any shard; history stays with the manifest
+                    return null;
+                }
+                return routeToShard(manifest, args, false);
+            case "update":
+                return routeToShard(manifest, args, false);
+            case "show", "history":
+                return routeToShard(manifest, args, true);
+            case "batch", "serve", "watch":
+                throw new IOException(name + " is not supported on a sharded store");
+            default:
+                shards = manifest;
+                manifestPath = null;
+                return null;
+        }
+    }
+
+    /** Points the command at the shard holding the task ID in args[1], and locks that shard. */
+    private static StoreLock routeToShard(ShardManifest manifest, String[] args, boolean shared) throws IOException {
+        int target = 0;
+        try {
+            target = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        } catch (NumberFormatException e) {
+            // The handler reports the invalid ID
+        }
+        tasksPath = manifest.shardFor(target);
+        return StoreLock.acquireSeparate(tasksPath, shared);
+    }
+
     private static void handleAdd(String[] args) throws IOException {
         if (args.length < 2) {
             System.err.println("Usage: java TT add \"Task description\" [priority]");
@@ -63,25 +270,23 @@ public class TaskTracker {
             return;
         }
 
-        String priority = "medium"; // default priority
+        Priority priority = Priority.MEDIUM; // default priority
         if (args.length > 2) {
-            String inputPriority = args[2].toLowerCase();
-            if (VALID_PRIORITIES.contains(inputPriority)) {
-                priority = inputPriority;
-            } else {
+            priority = Priority.parse(args[2]);
+            if (priority == null) {
                 System.err.println("Invalid priority. Valid options: high, medium, low");
                 return;
             }
         }
 
-        List<Task> tasks = loadTasks();
-        int newId = getNextId(tasks);
-
-        Task newTask = new Task(newId, description, "todo", priority, getCurrentTimestamp(), getCurrentTimestamp());
-        tasks.add(newTask);
+        int newId = reservedId > 0 ? reservedId : nextId();
+        long now = getCurrentTimestamp();
+        Task newTask = new Task(newId, description, Status.TODO, priority, now, now);
 
-        saveTasks(tasks);
-        System.out.println("Task added successfully (ID: " + newId + ", Priority: " + priority.toUpperCase() + ")");
+        trackStats(null, newTask);
+        persist(TaskLog.added(newTask));
+        recordTransition(newId, null, Status.TODO, now);
+        System.out.println("Task added successfully (ID: " + newId + ", Priority: " + priority.getName().toUpperCase() + ")");
     }
 
     private static void handleUpdate(String[] args) throws IOException {
@@ -99,24 +304,20 @@ public class TaskTracker {
                 return;
             }
 
-            List<Task> tasks = loadTasks();
-            boolean found = false;
-
-            for (Task task : tasks) {
-                if (task.getId() == id) {
-                    task.setDescription(newDescription);
-                    task.setUpdatedAt(getCurrentTimestamp());
-                    found = true;
-                    break;
-                }
-            }
+            Task task = findTask(id);
 
-            if (!found) {
+            if (task == null) {
                 System.err.println("Task with ID " + id + " not found");
                 return;
             }
 
-            saveTasks(tasks);
+            // Change a copy: a resident store takes the change from the record once it is saved
+            Task before = task;
+            task = task.copy();
+            task.setDescription(newDescription);
+            task.setUpdatedAt(getCurrentTimestamp());
+            trackStats(before, task);
+            persistChange(task, TaskLog.updated(task), true);
             System.out.println("Task updated successfully");
 
         } catch (NumberFormatException e) {
@@ -125,6 +326,10 @@ public class TaskTracker {
     }
 
     private static void handleSetPriority(String[] args) throws IOException {
+        if (args.length > 1 && BulkQuery.isQuery(args[1])) {
+            handleBulk("priority", args, null);
+            return;
+        }
         if (args.length < 3) {
             System.err.println("Usage: java TT priority <id> <priority>");
             System.err.println("Priority options: high, medium, low");
@@ -133,32 +338,27 @@ public class TaskTracker {
 
         try {
             int id = Integer.parseInt(args[1]);
-            String newPriority = args[2].toLowerCase();
+            Priority newPriority = Priority.parse(args[2]);
 
-            if (!VALID_PRIORITIES.contains(newPriority)) {
+            if (newPriority == null) {
                 System.err.println("Invalid priority. Valid options: high, medium, low");
                 return;
             }
 
-            List<Task> tasks = loadTasks();
-            boolean found = false;
-
-            for (Task task : tasks) {
-                if (task.getId() == id) {
-                    task.setPriority(newPriority);
-                    task.setUpdatedAt(getCurrentTimestamp());
-                    found = true;
-                    break;
-                }
-            }
+            Task task = findTask(id);
 
-            if (!found) {
+            if (task == null) {
                 System.err.println("Task with ID " + id + " not found");
                 return;
             }
 
-            saveTasks(tasks);
-            System.out.println("Task priority updated to " + newPriority.toUpperCase());
+            Task before = task;
+            task = task.copy();
+            task.setPriority(newPriority);
+            task.setUpdatedAt(getCurrentTimestamp());
+            trackStats(before, task);
+            persistChange(task, TaskLog.priorityChanged(task), false);
+            System.out.println("Task priority updated to " + newPriority.getName().toUpperCase());
 
         } catch (NumberFormatException e) {
             System.err.println("Invalid task ID. Please provide a valid number.");
@@ -166,6 +366,10 @@ public class TaskTracker {
     }
 
     private static void handleDelete(String[] args) throws IOException {
+        if (args.length > 1 && BulkQuery.isQuery(args[1])) {
+            handleBulk("delete", args, null);
+            return;
+        }
         if (args.length < 2) {
             System.err.println("Usage: java TT delete <id>");
             return;
@@ -173,15 +377,15 @@ public class TaskTracker {
 
         try {
             int id = Integer.parseInt(args[1]);
-            List<Task> tasks = loadTasks();
-            boolean removed = tasks.removeIf(task -> task.getId() == id);
-
-            if (!removed) {
+            Task task = findTask(id);
+            if (task == null) {
                 System.err.println("Task with ID " + id + " not found");
                 return;
             }
 
-            saveTasks(tasks);
+            trackStats(task, null);
+            persist(TaskLog.deleted(id));
+            recordTransition(id, task.getStatus(), null, getCurrentTimestamp());
             System.out.println("Task deleted successfully");
 
         } catch (NumberFormatException e) {
@@ -189,13 +393,44 @@ public class TaskTracker {
         }
     }
 
+    private static void handleShow(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java TT show <id>");
+            return;
+        }
+
+        try {
+            int id = Integer.parseInt(args[1]);
+            Task task = findTask(id);
+
+            if (task == null) {
+                System.err.println("Task with ID " + id + " not found");
+                return;
+            }
+
+            System.out.println("Task " + task.getId());
+            System.out.println("  Description: " + task.getDescription());
+            System.out.println("  Status:      " + task.getStatus());
+            System.out.println("  Priority:    " + task.getPriorityDisplay());
+            System.out.println("  Created:     " + Task.formatTimestamp(task.getCreatedAt()));
+            System.out.println("  Updated:     " + Task.formatTimestamp(task.getUpdatedAt()));
+
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid task ID. Please provide a valid number.");
+        }
+    }
+
     private static void handleMarkInProgress(String[] args) throws IOException {
         if (args.length < 2) {
             System.err.println("Usage: java TT mark-in-progress <id>");
             return;
         }
+        if (BulkQuery.isQuery(args[1])) {
+            handleBulk("mark-in-progress", args, Status.IN_PROGRESS);
+            return;
+        }
 
-        markTaskStatus(args[1], "in-progress");
+        markTaskStatus(args[1], Status.IN_PROGRESS);
     }
 
     private static void handleMarkDone(String[] args) throws IOException {
@@ -203,31 +438,33 @@ public class TaskTracker {
             System.err.println("Usage: java TT mark-done <id>");
             return;
         }
+        if (BulkQuery.isQuery(args[1])) {
+            handleBulk("mark-done", args, Status.DONE);
+            return;
+        }
 
-        markTaskStatus(args[1], "done");
+        markTaskStatus(args[1], Status.DONE);
     }
 
-    private static void markTaskStatus(String idStr, String status) throws IOException {
+    private static void markTaskStatus(String idStr, Status status) throws IOException {
         try {
             int id = Integer.parseInt(idStr);
-            List<Task> tasks = loadTasks();
-            boolean found = false;
-
-            for (Task task : tasks) {
-                if (task.getId() == id) {
-                    task.setStatus(status);
-                    task.setUpdatedAt(getCurrentTimestamp());
-                    found = true;
-                    break;
-                }
-            }
+            Task task = findTask(id);
 
-            if (!found) {
+            if (task == null) {
                 System.err.println("Task with ID " + id + " not found");
                 return;
             }
 
-            saveTasks(tasks);
+            Task before = task;
+            task = task.copy();
+            task.setStatus(status);
+            task.setUpdatedAt(getCurrentTimestamp());
+            trackStats(before, task);
+            persistChange(task, TaskLog.statusChanged(task), false);
+            if (before.getStatus() != status) {
+                recordTransition(id, before.getStatus(), status, task.getUpdatedAt());
+            }
             System.out.println("Task marked as " + status);
 
         } catch (NumberFormatException e) {
@@ -235,297 +472,1929 @@ public class TaskTracker {
         }
     }
 
-    private static void handleList(String[] args) throws IOException {
-        String filter = "all";
-        String priorityFilter = null;
-        boolean sortByPriority = false;
+    /**
+     * Runs mark-in-progress, mark-done, priority or delete on every task a
+     * query selects, given in place of the ID. The priority to set comes last.
+     */
+    private static void handleBulk(String command, String[] args, Status status) throws IOException {
+        boolean setsPriority = command.equals("priority");
+        Priority priority = setsPriority && args.length > 2 ? Priority.parse(args[args.length - 1]) : null;
+        BulkQuery query = BulkQuery.parse(args, setsPriority ? args.length - 1 : args.length);
+        if (query == null || (setsPriority && priority == null)) {
+            System.err.println("Usage: java TT " + command + " --ids <ids> | --where <field=value>..."
+                    + " [--updated-before <ts>] [--updated-since <ts>]" + (setsPriority ? " <priority>" : ""));
+            System.err.println("IDs as 3,7,10-250; fields status=<todo|in-progress|done> and priority=<high|medium|low>");
+            return;
+        }
 
-        // Parse arguments
-        for (int i = 1; i < args.length; i++) {
-            String arg = args[i].toLowerCase();
-            if (Set.of("done", "todo", "in-progress", "all").contains(arg)) {
-                filter = arg;
-            } else if (VALID_PRIORITIES.contains(arg)) {
-                priorityFilter = arg;
-            } else if (arg.equals("--sort-priority") || arg.equals("-sp")) {
-                sortByPriority = true;
+        int count = applyBulk(command, query, status, priority);
+        String tasks = count == 1 ? "1 task" : count + " tasks";
+        switch (command) {
+            case "delete" -> System.out.println(tasks + " deleted");
+            case "priority" -> System.out.println("Priority updated to " + priority.getName().toUpperCase() + " for " + tasks);
+            default -> System.out.println(tasks + " marked as " + status);
+        }
+    }
+
+    /**
+     * Changes the selected tasks and returns how many changed. Tasks already
+     * in the target status or priority are skipped, so they keep their
+     * updatedAt and get no log record or history event. The store is read
+     * once, binary stores decoding only the records the query can match, and
+     * every change goes to the log in a single append, with one update of the
+     * stats rollups and one write to the history.
+     */
+    private static int applyBulk(String command, BulkQuery query, Status status, Priority priority) throws IOException {
+        if (shards != null) {
+            int[] total = new int[1];
+            forEachShard(false, shard -> total[0] += applyBulk(command, query, status, priority));
+            return total[0];
+        }
+
+        List<Task> selected = new ArrayList<>();
+        if (query.ids != null) {
+            for (Task task : findTasks(query.ids)) {
+                if (query.filter.matches(task)) {
+                    selected.add(task);
+                }
+            }
+        } else {
+            TaskTable table = loadTable(query.filter);
+            for (int row : table.select(query.filter)) {
+                selected.add(table.task(row));
             }
         }
+        if (command.equals("priority")) {
+            selected.removeIf(task -> task.getPriority() == priority);
+        } else if (!command.equals("delete")) {
+            selected.removeIf(task -> task.getStatus() == status);
+        }
+        if (selected.isEmpty()) {
+            return 0;
+        }
 
-        List<Task> tasks = loadTasks();
+        long now = getCurrentTimestamp();
+        List<Task> before = new ArrayList<>(selected.size());
+        List<Task> after = new ArrayList<>(selected.size());
+        List<String> records = new ArrayList<>(selected.size());
+        List<TaskHistory.Event> transitions = new ArrayList<>();
+        for (Task found : selected) {
+            // Change copies: a resident store takes the changes from the records once they are saved
+            before.add(found);
+            Task task = found.copy();
+            Status from = task.getStatus();
+            switch (command) {
+                case "delete" -> {
+                    after.add(null);
+                    records.add(TaskLog.deleted(task.getId()));
+                    transitions.add(new TaskHistory.Event(task.getId(), from, null, now * 1000));
+                }
+                case "priority" -> {
+                    task.setPriority(priority);
+                    task.setUpdatedAt(now);
+                    after.add(task);
+                    records.add(TaskLog.priorityChanged(task));
+                }
+                default -> {
+                    task.setStatus(status);
+                    task.setUpdatedAt(now);
+                    after.add(task);
+                    records.add(TaskLog.statusChanged(task));
+                    transitions.add(new TaskHistory.Event(task.getId(), from, status, now * 1000));
+                }
+            }
+        }
 
-        // Filter by status
-        List<Task> filteredTasks = switch (filter) {
-            case "done" -> tasks.stream()
-                    .filter(task -> "done".equals(task.getStatus()))
-                    .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-            case "todo" -> tasks.stream()
-                    .filter(task -> "todo".equals(task.getStatus()))
-                    .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-            case "in-progress" -> tasks.stream()
-                    .filter(task -> "in-progress".equals(task.getStatus()))
-                    .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-            default -> new ArrayList<>(tasks);
-        };
+        trackStats(before, after);
+        persistAll(records);
+        recordTransitions(transitions);
+        return selected.size();
+    }
 
-        // Filter by priority if specified
-        if (priorityFilter != null) {
-            String finalPriorityFilter = priorityFilter;
-            filteredTasks = filteredTasks.stream()
-                    .filter(task -> finalPriorityFilter.equals(task.getPriority()))
-                    .collect(Collectors.toList());
+    private static void handleList(String[] args) throws IOException {
+        Status filter = null; // null lists every status
+        Priority priorityFilter = null;
+        boolean sortByPriority = false;
+        int limit = Integer.MAX_VALUE;
+        int offset = 0;
+        int after = Integer.MIN_VALUE;
+        TaskFilter timeFilter = new TaskFilter();
+        String timeSuffix = "";
+
+        // Parse arguments
+        try {
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i].toLowerCase();
+                if (arg.equals("all")) {
+                    filter = null;
+                } else if (Status.parse(arg) != null) {
+                    filter = Status.parse(arg);
+                } else if (Priority.parse(arg) != null) {
+                    priorityFilter = Priority.parse(arg);
+                } else if (arg.equals("--sort-priority") || arg.equals("-sp")) {
+                    sortByPriority = true;
+                } else if (arg.equals("--limit") && i + 1 < args.length) {
+                    limit = Integer.parseInt(args[++i]);
+                } else if (arg.equals("--offset") && i + 1 < args.length) {
+                    offset = Integer.parseInt(args[++i]);
+                } else if (arg.equals("--after") && i + 1 < args.length) {
+                    after = Integer.parseInt(args[++i]);
+                } else if (arg.equals("--updated-since") && i + 1 < args.length) {
+                    long since = parseTimeArgument(args[++i], false);
+                    if (since == Task.NO_TIMESTAMP) {
+                        System.err.println(INVALID_TIMESTAMP);
+                        return;
+                    }
+                    timeFilter.updated(since, Long.MAX_VALUE);
+                    timeSuffix += " [updated since " + Task.formatTimestamp(since) + "]";
+                } else if (arg.equals("--created-between") && i + 2 < args.length) {
+                    long from = parseTimeArgument(args[++i], false);
+                    long to = parseTimeArgument(args[++i], true);
+                    if (from == Task.NO_TIMESTAMP || to == Task.NO_TIMESTAMP) {
+                        System.err.println(INVALID_TIMESTAMP);
+                        return;
+                    }
+                    timeFilter.created(from, to);
+                    timeSuffix += " [created " + Task.formatTimestamp(from) + " to " + Task.formatTimestamp(to) + "]";
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number for --limit, --offset or --after");
+            return;
+        }
+        if (limit < 0 || offset < 0) {
+            System.err.println("--limit and --offset cannot be negative");
+            return;
         }
 
-        // Sort by priority if requested
+        // Filter over the table's columns; binary stores already skip non-matching records on load
+        TaskFilter taskFilter = timeFilter.status(filter).priority(priorityFilter);
+        TaskTable table = loadTable(taskFilter);
+        int[] rows = table.select(taskFilter);
+
+        // Sort by priority if requested; only the row numbers move
         if (sortByPriority) {
-            filteredTasks.sort((t1, t2) -> Integer.compare(t2.getPriorityValue(), t1.getPriorityValue()));
+            rows = priorityOrder(table, rows);
         }
 
-        if (filteredTasks.isEmpty()) {
+        if (rows.length == 0) {
             System.out.println("No tasks found" +
-                    (filter.equals("all") ? "" : " with status: " + filter) +
-                    (priorityFilter != null ? " and priority: " + priorityFilter : ""));
+                    (filter == null ? "" : " with status: " + filter) +
+                    (priorityFilter != null ? " and priority: " + priorityFilter : "") +
+                    timeSuffix);
             return;
         }
 
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out, System.out.charset()), 1 << 16);
+
         // Print header
         String titleSuffix = "";
-        if (!filter.equals("all")) titleSuffix += " (" + filter + ")";
-        if (priorityFilter != null) titleSuffix += " [" + priorityFilter.toUpperCase() + " priority]";
+        if (filter != null) titleSuffix += " (" + filter + ")";
+        if (priorityFilter != null) titleSuffix += " [" + priorityFilter.getName().toUpperCase() + " priority]";
+        titleSuffix += timeSuffix;
         if (sortByPriority) titleSuffix += " [sorted by priority]";
 
-        System.out.println("Tasks" + titleSuffix + ":");
-        System.out.println("ID\tPriority\tStatus\t\tDescription\t\tCreated\t\t\tUpdated");
-        System.out.println("─".repeat(120));
-
-        // Print task summary
-        Map<String, Long> statusCounts = filteredTasks.stream()
-                .collect(Collectors.groupingBy(Task::getStatus, Collectors.counting()));
-        Map<String, Long> priorityCounts = filteredTasks.stream()
-                .collect(Collectors.groupingBy(Task::getPriority, Collectors.counting()));
-
-        for (Task task : filteredTasks) {
-            System.out.printf("%d\t%s\t%-12s\t%-20s\t%s\t%s%n",
-                    task.getId(),
-                    task.getPriorityDisplay(),
-                    task.getStatus(),
-                    truncateString(task.getDescription(), 20),
-                    task.getCreatedAt(),
-                    task.getUpdatedAt()
-            );
-        }
-
-        System.out.println("─".repeat(120));
-        System.out.println("Summary: " + filteredTasks.size() + " tasks");
-        System.out.print("Status: ");
-        statusCounts.forEach((status, count) -> System.out.print(status + "(" + count + ") "));
-        System.out.println();
-        System.out.print("Priority: ");
-        priorityCounts.forEach((priority, count) -> System.out.print(priority + "(" + count + ") "));
-        System.out.println();
-    }
+        out.write("Tasks" + titleSuffix + ":");
+        out.newLine();
+        out.write("ID\tPriority\tStatus\t\tDescription\t\tCreated\t\t\tUpdated");
+        out.newLine();
+        out.write(RULE);
+        out.newLine();
+
+        // Count every matching row for the summary, but only build Task objects for the printed page
+        int[] statusCounts = table.countStatuses(rows);
+        int[] priorityCounts = table.countPriorities(rows);
+        int eligible = 0;
+        int shown = 0;
+        StringBuilder line = new StringBuilder(128);
+
+        for (int i = 0; i < rows.length && shown < limit; i++) {
+            if (table.id(rows[i]) <= after || eligible++ < offset) {
+                continue;
+            }
 
-    private static String truncateString(String str, int maxLength) {
-        if (str.length() <= maxLength) {
-            return str;
+            out.append(appendRow(line, table.task(rows[i])));
+            out.newLine();
+            shown++;
         }
-        return str.substring(0, maxLength - 3) + "...";
-    }
 
-    private static List<Task> loadTasks() throws IOException {
-        Path filePath = Paths.get(TASKS_FILE);
+        out.write(RULE);
+        out.newLine();
+        out.write("Summary: " + rows.length + " tasks");
+        if (shown < rows.length) {
+            out.write(" (showing " + shown + ")");
+        }
+        out.newLine();
+        out.write("Status: ");
+        for (Status status : Status.values()) {
+            if (statusCounts[status.ordinal()] > 0) {
+                out.write(status + "(" + statusCounts[status.ordinal()] + ") ");
+            }
+        }
+        out.newLine();
+        out.write("Priority: ");
+        for (Priority priority : Priority.values()) {
+            if (priorityCounts[priority.ordinal()] > 0) {
+                out.write(priority + "(" + priorityCounts[priority.ordinal()] + ") ");
+            }
+        }
+        out.newLine();
+        out.flush();
+    }
 
-        if (!Files.exists(filePath)) {
-            return new ArrayList<>();
+    private static void handleNext(String[] args) throws IOException {
+        int k = 5;
+        if (args.length > 1) {
+            try {
+                k = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid count. Please provide a valid number.");
+                return;
+            }
+            if (k <= 0) {
+                System.err.println("Count must be positive");
+                return;
+            }
         }
 
-        try {
-            String content = Files.readString(filePath);
-            if (content.trim().isEmpty()) {
-                return new ArrayList<>();
+        // Bounded heap of list positions with the least urgent on top, so only k are ever kept
+        TaskTable table = loadTable(new TaskFilter());
+        PriorityQueue<Integer> heap = new PriorityQueue<>(k + 1, (a, b) -> compareUrgency(table, a, b));
+        for (int row = 0; row < table.size(); row++) {
+            if (table.isDone(row)) continue;
+            heap.offer(row);
+            if (heap.size() > k) {
+                heap.poll();
             }
+        }
 
-            return parseTasksFromJson(content);
-        } catch (IOException e) {
-            throw new IOException("Error reading tasks file: " + e.getMessage());
+        if (heap.isEmpty()) {
+            System.out.println("No open tasks");
+            return;
         }
+
+        int[] next = new int[heap.size()];
+        for (int n = next.length - 1; n >= 0; n--) {
+            next[n] = heap.poll();
+        }
+
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out, System.out.charset()));
+        out.write("Next " + next.length + " open tasks by priority:");
+        out.newLine();
+        out.write("ID\tPriority\tStatus\t\tDescription\t\tCreated\t\t\tUpdated");
+        out.newLine();
+        out.write(RULE);
+        out.newLine();
+        StringBuilder line = new StringBuilder(128);
+        for (int row : next) {
+            out.append(appendRow(line, table.task(row)));
+            out.newLine();
+        }
+        out.flush();
     }
 
-    private static void saveTasks(List<Task> tasks) throws IOException {
-        String json = tasksToJson(tasks);
+    private static void handleSearch(String[] args) throws IOException {
+        Status statusFilter = null;
+        Priority priorityFilter = null;
+        int limit = Integer.MAX_VALUE;
+        List<String> words = new ArrayList<>();
 
+        // Bare words are search terms, so filters take flags here unlike in list
         try {
-            Files.writeString(Paths.get(TASKS_FILE), json);
-        } catch (IOException e) {
-            throw new IOException("Error saving tasks: " + e.getMessage());
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--status") && i + 1 < args.length) {
+                    statusFilter = Status.parse(args[++i]);
+                    if (statusFilter == null) {
+                        System.err.println("Invalid status. Valid options: todo, in-progress, done");
+                        return;
+                    }
+                } else if (arg.equals("--priority") && i + 1 < args.length) {
+                    priorityFilter = Priority.parse(args[++i]);
+                    if (priorityFilter == null) {
+                        System.err.println("Invalid priority. Valid options: high, medium, low");
+                        return;
+                    }
+                } else if (arg.equals("--limit") && i + 1 < args.length) {
+                    limit = Integer.parseInt(args[++i]);
+                } else {
+                    words.add(arg);
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number for --limit");
+            return;
         }
-    }
 
-    private static List<Task> parseTasksFromJson(String json) {
-        List<Task> tasks = new ArrayList<>();
+        List<String> terms = SearchIndex.parseQuery(words);
+        if (terms.isEmpty()) {
+            System.err.println("Usage: java TT search <terms> [--status <status>] [--priority <priority>] [--limit <n>]");
+            return;
+        }
 
-        // Remove outer brackets and whitespace
-        json = json.trim();
-        if (json.startsWith("[")) {
-            json = json.substring(1);
+        // Index hits are exact for the snapshot; tasks changed since are re-checked by text
+        int[] hits = searchIndexHits(terms);
+        int[] changed = changedIds();
+        IntIntMap changedSet = new IntIntMap(changed.length);
+        for (int id : changed) {
+            changedSet.put(id, 0);
+        }
+        boolean filtered = statusFilter != null || priorityFilter != null;
+
+        // Unfiltered, an unchanged hit is a match without decoding it, so only the page is loaded
+        IntIntMap load = new IntIntMap();
+        int unchangedHits = 0;
+        for (int id : hits) {
+            if (changedSet.containsKey(id)) continue;
+            if (filtered || unchangedHits < limit) {
+                load.put(id, 0);
+            }
+            unchangedHits++;
         }
-        if (json.endsWith("]")) {
-            json = json.substring(0, json.length() - 1);
+        for (int id : changed) {
+            load.put(id, 0);
         }
 
-        if (json.trim().isEmpty()) {
-            return tasks;
+        List<Task> matches = new ArrayList<>();
+        int total = filtered ? 0 : unchangedHits;
+        for (Task task : findTasks(load.keys())) {
+            boolean isChanged = changedSet.containsKey(task.getId());
+            if (statusFilter != null && task.getStatus() != statusFilter) continue;
+            if (priorityFilter != null && task.getPriority() != priorityFilter) continue;
+            if (isChanged && !SearchIndex.matches(task.getDescription(), terms)) continue;
+            matches.add(task);
+            if (filtered || isChanged) {
+                total++;
+            }
         }
 
-        // Split by task objects (looking for },{ pattern)
-        String[] taskStrings = json.split("(?<=\\}),\\s*(?=\\{)");
+        if (matches.isEmpty()) {
+            System.out.println("No tasks match: " + String.join(" ", words));
+            return;
+        }
 
-        for (String taskString : taskStrings) {
-            taskString = taskString.trim();
-            if (taskString.isEmpty()) continue;
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out, System.out.charset()));
+        out.write("Tasks matching: " + String.join(" ", words));
+        out.newLine();
+        out.write("ID\tPriority\tStatus\t\tDescription");
+        out.newLine();
+        out.write(RULE);
+        out.newLine();
+        StringBuilder line = new StringBuilder(128);
+        int shown = Math.min(limit, matches.size());
+        for (int i = 0; i < shown; i++) {
+            Task task = matches.get(i);
+            line.setLength(0);
+            line.append(task.getId()).append('\t').append(task.getPriorityDisplay()).append('\t');
+            appendPadded(line, task.getStatus().getValue(), 12).append('\t').append(task.getDescription());
+            out.append(line);
+            out.newLine();
+        }
+        out.write(RULE);
+        out.newLine();
+        out.write("Found " + total + " tasks" + (shown < total ? " (showing " + shown + ")" : ""));
+        out.newLine();
+        out.flush();
+    }
 
-            // Ensure the task string is properly wrapped with braces
-            if (!taskString.startsWith("{")) {
-                taskString = "{" + taskString;
-            }
-            if (!taskString.endsWith("}")) {
-                taskString = taskString + "}";
+    /**
+     * IDs of the snapshot's tasks matching the terms. The index is built on
+     * first use and rebuilt with the snapshot after that.
+     */
+    private static int[] searchIndexHits(List<String> terms) throws IOException {
+        if (shards != null) {
+            List<int[]> parts = new ArrayList<>();
+            forEachShard(true, shard -> parts.add(searchIndexHits(terms)));
+            return sortedUnion(parts);
+        }
+
+        try {
+            SearchIndex index = SearchIndex.open(tasksPath);
+            if (index == null && Files.exists(tasksPath)) {
+                SearchIndex.write(tasksPath, readSnapshot(tasksPath));
+                index = SearchIndex.open(tasksPath);
             }
+            return index != null ? index.search(terms) : new int[0];
+        } catch (IOException e) {
+            throw new IOException("Error reading search index: " + e.getMessage());
+        }
+    }
 
-            try {
-                Task task = parseTaskFromJson(taskString);
-                if (task != null) {
-                    tasks.add(task);
-                }
-            } catch (Exception e) {
-                System.err.println("Warning: Could not parse task: " + taskString);
+    /** IDs of tasks changed since the snapshot was written, by the log or by a running batch. */
+    private static int[] changedIds() throws IOException {
+        if (shards != null) {
+            List<int[]> parts = new ArrayList<>();
+            forEachShard(true, shard -> parts.add(changedIds()));
+            return sortedUnion(parts);
+        }
+
+        IntIntMap ids = new IntIntMap();
+        for (int id : new TaskLog(tasksPath).touchedIds()) {
+            ids.put(id, 0);
+        }
+        if (pendingRecords != null) {
+            for (String record : pendingRecords) {
+                ids.put(Integer.parseInt(record.split("\t", 3)[1]), 0);
             }
         }
+        return ids.keys();
+    }
 
-        return tasks;
+    private static int[] sortedUnion(List<int[]> parts) {
+        int[] ids = parts.stream().flatMapToInt(Arrays::stream).toArray();
+        Arrays.sort(ids);
+        return ids;
     }
 
-    private static Task parseTaskFromJson(String json) {
-        try {
-            // Simple JSON parsing without external libraries
-            Map<String, String> values = new HashMap<>();
+    /** Higher priority is more urgent; within a priority, the older (lower) ID is. */
+    private static int compareUrgency(TaskTable table, int a, int b) {
+        int byPriority = Integer.compare(table.priorityValue(a), table.priorityValue(b));
+        return byPriority != 0 ? byPriority : Integer.compare(table.id(b), table.id(a));
+    }
 
-            // Remove braces
-            json = json.trim();
-            if (json.startsWith("{")) json = json.substring(1);
-            if (json.endsWith("}")) json = json.substring(0, json.length() - 1);
+    /**
+     * Reorders rows by descending priority with a counting pass over the three
+     * levels. Stable, so each level keeps table (ID) order.
+     */
+    private static int[] priorityOrder(TaskTable table, int[] rows) {
+        int[] starts = new int[5];
+        for (int row : rows) {
+            starts[4 - table.priorityValue(row)]++;
+        }
+        for (int bucket = 1, sum = 0; bucket < starts.length; bucket++) {
+            int count = starts[bucket];
+            starts[bucket] = sum;
+            sum += count;
+        }
 
-            // Split by commas, but be careful with commas inside quoted strings
-            List<String> pairs = splitJsonPairs(json);
+        int[] order = new int[rows.length];
+        for (int row : rows) {
+            order[starts[4 - table.priorityValue(row)]++] = row;
+        }
+        return order;
+    }
 
-            for (String pair : pairs) {
-                String[] keyValue = pair.split(":", 2);
-                if (keyValue.length == 2) {
-                    String key = keyValue[0].trim().replace("\"", "");
-                    String value = keyValue[1].trim().replace("\"", "");
-                    values.put(key, value);
-                }
-            }
+    /** Formats one list row into the reused builder. */
+    private static StringBuilder appendRow(StringBuilder row, Task task) {
+        row.setLength(0);
+        row.append(task.getId()).append('\t')
+                .append(task.getPriorityDisplay()).append('\t');
+        appendPadded(row, task.getStatus().getValue(), 12).append('\t');
+        appendPadded(row, truncateString(task.getDescription(), 20), 20).append('\t')
+                .append(Task.formatTimestamp(task.getCreatedAt())).append('\t')
+                .append(Task.formatTimestamp(task.getUpdatedAt()));
+        return row;
+    }
 
-            int id = Integer.parseInt(values.get("id"));
-            String description = values.get("description");
-            String status = values.get("status");
-            String priority = values.getOrDefault("priority", "medium"); // backward compatibility
-            String createdAt = values.get("createdAt");
-            String updatedAt = values.get("updatedAt");
+    /** Left-aligns str in a column of the given width, like %-Ns. */
+    private static StringBuilder appendPadded(StringBuilder sb, String str, int width) {
+        sb.append(str);
+        for (int i = str.length(); i < width; i++) {
+            sb.append(' ');
+        }
+        return sb;
+    }
 
-            return new Task(id, description, status, priority, createdAt, updatedAt);
+    private static void handleChanges(String[] args) throws IOException {
+        if (args.length < 3 || !args[1].equals("--since")) {
+            System.err.println("Usage: java TaskTracker changes --since <timestamp>");
+            return;
+        }
+        long since = parseTimeArgument(args[2], false);
+        if (since == Task.NO_TIMESTAMP) {
+            System.err.println(INVALID_TIMESTAMP);
+            return;
+        }
 
-        } catch (Exception e) {
-            return null;
+        TaskFilter filter = new TaskFilter().updated(since, Long.MAX_VALUE);
+        TaskTable table = loadTable(filter);
+        int[] rows = table.select(filter);
+        List<Task> changed = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            changed.add(table.task(row));
         }
+
+        // Oldest change first, so a sync job can resume from the last updatedAt it saw
+        changed.sort(Comparator.comparingLong(Task::getUpdatedAt).thenComparingInt(Task::getId));
+        TaskJsonWriter.write(Channels.newChannel(System.out), changed, false);
+        System.out.println();
     }
 
-    private static List<String> splitJsonPairs(String json) {
-        List<String> pairs = new ArrayList<>();
-        StringBuilder current = new StringBuilder();
-        boolean inQuotes = false;
-        int braceCount = 0;
-
-        for (int i = 0; i < json.length(); i++) {
-            char c = json.charAt(i);
-
-            if (c == '"' && (i == 0 || json.charAt(i - 1) != '\\')) {
-                inQuotes = !inQuotes;
-            } else if (c == '{' && !inQuotes) {
-                braceCount++;
-            } else if (c == '}' && !inQuotes) {
-                braceCount--;
-            } else if (c == ',' && !inQuotes && braceCount == 0) {
-                pairs.add(current.toString().trim());
-                current = new StringBuilder();
-                continue;
+    private static void handleStats(String[] args) throws IOException {
+        boolean rebuild = false;
+        int days = 14;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals("--rebuild")) {
+                    rebuild = true;
+                } else if (args[i].equals("--days") && i + 1 < args.length) {
+                    days = Integer.parseInt(args[++i]);
+                } else {
+                    System.err.println("Usage: java TT stats [--days <n>] [--rebuild]");
+                    return;
+                }
             }
-
-            current.append(c);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number for --days");
+            return;
         }
 
-        if (!current.isEmpty()) {
-            pairs.add(current.toString().trim());
+        TaskStats stats = loadStats(rebuild);
+        Priority[] priorities = {Priority.HIGH, Priority.MEDIUM, Priority.LOW};
+        StringBuilder out = new StringBuilder();
+        out.append("Tasks: ").append(stats.total()).append("\n\n");
+        out.append(String.format("%-12s%10s%10s%10s%10s%n", "Status", "high", "medium", "low", "total"));
+        int[] columnTotals = new int[priorities.length];
+        for (Status status : Status.values()) {
+            out.append(String.format("%-12s", status));
+            int rowTotal = 0;
+            for (int i = 0; i < priorities.length; i++) {
+                int count = stats.count(status, priorities[i]);
+                out.append(String.format("%10d", count));
+                columnTotals[i] += count;
+                rowTotal += count;
+            }
+            out.append(String.format("%10d%n", rowTotal));
+        }
+        out.append(String.format("%-12s", "total"));
+        for (int total : columnTotals) {
+            out.append(String.format("%10d", total));
+        }
+        out.append(String.format("%10d%n", stats.total()));
+
+        NavigableMap<Integer, Integer> byDay = stats.getDoneByDay();
+        if (!byDay.isEmpty() && days > 0) {
+            out.append("\nCompleted per day (last ").append(days).append(" days with completions):\n");
+            int shown = 0;
+            for (Map.Entry<Integer, Integer> day : byDay.descendingMap().entrySet()) {
+                if (shown++ == days) break;
+                String date = Task.formatTimestamp(day.getKey() * 86400L).substring(0, 10);
+                out.append(String.format("  %s%8d%n", date, day.getValue()));
+            }
         }
 
-        return pairs;
+        long median = stats.medianLeadSeconds();
+        if (median >= 0) {
+            out.append("\nMedian time from creation to done: ").append(formatDuration(median)).append('\n');
+        }
+        System.out.print(out);
     }
 
-    private static String tasksToJson(List<Task> tasks) {
-        StringBuilder json = new StringBuilder();
-        json.append("[\n");
-
-        for (int i = 0; i < tasks.size(); i++) {
-            Task task = tasks.get(i);
-            json.append("  {\n");
-            json.append("    \"id\": ").append(task.getId()).append(",\n");
-            json.append("    \"description\": \"").append(escapeJson(task.getDescription())).append("\",\n");
-            json.append("    \"status\": \"").append(task.getStatus()).append("\",\n");
-            json.append("    \"priority\": \"").append(task.getPriority()).append("\",\n");
-            json.append("    \"createdAt\": \"").append(task.getCreatedAt()).append("\",\n");
-            json.append("    \"updatedAt\": \"").append(task.getUpdatedAt()).append("\"\n");
-            json.append("  }");
+    /**
+     * Rollups for the store, built with a parallel pass over every task when
+     * missing or when a rebuild is asked for, and kept up to date after that.
+     */
+    private static TaskStats loadStats(boolean rebuild) throws IOException {
+        if (shards != null) {
+            TaskStats total = new TaskStats();
+            forEachShard(true, shard -> total.merge(loadStats(rebuild)));
+            return total;
+        }
 
-            if (i < tasks.size() - 1) {
-                json.append(",");
+        TaskStats stats = rebuild ? null : TaskStats.read(tasksPath);
+        if (stats == null) {
+            TaskTable table = loadTable(new TaskFilter());
+            Map<Integer, Long> completions = completions();
+            try (Metrics.Stopwatch timer = Metrics.time("stats.rollup")) {
+                stats = TaskStats.compute(table, completions);
+                stats.write(tasksPath);
+            } catch (IOException e) {
+                throw new IOException("Error saving stats: " + e.getMessage());
             }
-            json.append("\n");
         }
-
-        json.append("]");
-        return json.toString();
+        return stats;
     }
 
-    private static String escapeJson(String str) {
-        return str.replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
+    /** Formats seconds as the two largest units, e.g. "3d 4h" or "12m 5s". */
+    private static String formatDuration(long seconds) {
+        long days = seconds / 86400;
+        long hours = seconds % 86400 / 3600;
+        long minutes = seconds % 3600 / 60;
+        if (days > 0) {
+            return days + "d " + hours + "h";
+        }
+        if (hours > 0) {
+            return hours + "h " + minutes + "m";
+        }
+        return minutes + "m " + seconds % 60 + "s";
     }
 
-    private static int getNextId(List<Task> tasks) {
-        return tasks.stream()
-                .mapToInt(Task::getId)
-                .max()
-                .orElse(0) + 1;
-    }
+    private static void handleHistory(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java TT history <id>");
+            return;
+        }
 
-    private static String getCurrentTimestamp() {
-        return LocalDateTime.now().format(DateTimeFormatter.ofPattern(DATE_FORMAT));
-    }
+        int id;
+        try {
+            id = Integer.parseInt(args[1]);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid task ID. Please provide a valid number.");
+            return;
+        }
 
-    private static void printUsage() {
-        System.out.println("Task Tracker CLI");
-        System.out.println("Usage:");
+        List<TaskHistory.Event> events;
+        try (Metrics.Stopwatch timer = Metrics.time("history.read")) {
+            events = TaskHistory.events(historyStore(), id);
+        } catch (IOException e) {
+            throw new IOException("Error reading history: " + e.getMessage());
+        }
+        if (events.isEmpty()) {
+            System.out.println("No recorded history for task " + id);
+            return;
+        }
+
+        System.out.println("History of task " + id);
+        for (TaskHistory.Event event : events) {
+            String when = Task.formatTimestamp(Math.floorDiv(event.getMillis(), 1000));
+            String change = event.getFrom() == null ? "created as " + event.getTo()
+                    : event.getTo() == null ? "deleted while " + event.getFrom()
+                    : event.getFrom() == event.getTo() ? "done before its history was kept"
+                    : event.getFrom() + " -> " + event.getTo();
+            System.out.println("  " + when + "  " + change);
+        }
+    }
+
+    /**
+     * Reports cycle time (first start to done) and lead time (creation to
+     * done) over the completions in the history, with one sequential pass.
+     */
+    private static void handleCycleTime(String[] args) throws IOException {
+        long since = Long.MIN_VALUE;
+        if (args.length >= 3 && args[1].equals("--since")) {
+            since = parseTimeArgument(args[2], false);
+            if (since == Task.NO_TIMESTAMP) {
+                System.err.println(INVALID_TIMESTAMP);
+                return;
+            }
+        } else if (args.length > 1) {
+            System.err.println("Usage: java TT cycle-time [--since <timestamp>]");
+            return;
+        }
+        long sinceMillis = since == Long.MIN_VALUE ? since : since * 1000;
+
+        // Per task: when it was created and first started, in slots allocated on first sight
+        IntIntMap slots = new IntIntMap();
+        long[][] times = {new long[1024], new long[1024]};
+        long[][] samples = {new long[1024], new long[1024]};
+        int[] counts = new int[3]; // tasks seen, cycle samples, lead samples
+
+        try (Metrics.Stopwatch timer = Metrics.time("history.scan")) {
+            TaskHistory.scan(historyStore(), (id, from, to, millis) -> {
+                int slot = slots.get(id);
+                if (slot == IntIntMap.MISSING) {
+                    slot = counts[0]++;
+                    slots.put(id, slot);
+                    for (int i = 0; i < times.length; i++) {
+                        if (slot == times[i].length) {
+                            times[i] = Arrays.copyOf(times[i], slot * 2);
+                        }
+                        times[i][slot] = Long.MIN_VALUE;
+                    }
+                }
+                if (from == null) {
+                    times[0][slot] = millis;
+                    times[1][slot] = Long.MIN_VALUE; // a reused ID is a new task
+                }
+                if (to == Status.IN_PROGRESS && times[1][slot] == Long.MIN_VALUE) {
+                    times[1][slot] = millis;
+                }
+                if (to == Status.DONE && from != Status.DONE && millis >= sinceMillis) {
+                    for (int i = 0; i < 2; i++) {
+                        long start = times[1 - i][slot];
+                        if (start == Long.MIN_VALUE) continue;
+                        if (counts[i + 1] == samples[i].length) {
+                            samples[i] = Arrays.copyOf(samples[i], counts[i + 1] * 2);
+                        }
+                        samples[i][counts[i + 1]++] = millis - start;
+                    }
+                }
+            });
+        } catch (IOException e) {
+            throw new IOException("Error reading history: " + e.getMessage());
+        }
+
+        if (counts[1] == 0 && counts[2] == 0) {
+            System.out.println("No completions recorded" + (since != Long.MIN_VALUE ? " since " + args[2] : ""));
+            return;
+        }
+        System.out.println(String.format("%-12s%10s%12s%12s%12s%12s", "", "samples", "median", "p85", "p95", "max"));
+        printPercentiles("cycle time", Arrays.copyOf(samples[0], counts[1]));
+        printPercentiles("lead time", Arrays.copyOf(samples[1], counts[2]));
+    }
+
+    private static void printPercentiles(String label, long[] millis) {
+        if (millis.length == 0) {
+            return;
+        }
+        Arrays.sort(millis);
+        StringBuilder row = new StringBuilder(String.format("%-12s%10d", label, millis.length));
+        for (double quantile : new double[] {0.5, 0.85, 0.95, 1.0}) {
+            int index = (int) Math.ceil(quantile * millis.length) - 1;
+            row.append(String.format("%12s", formatDuration(millis[Math.max(index, 0)] / 1000)));
+        }
+        System.out.println(row);
+    }
+
+    private static void handleWatch(String[] args) throws IOException {
+        Status statusFilter = null;
+        Priority priorityFilter = null;
+        boolean json = false;
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i].toLowerCase();
+            if (arg.equals("--json")) {
+                json = true;
+            } else if (arg.equals("all")) {
+                statusFilter = null;
+            } else if (Status.parse(arg) != null) {
+                statusFilter = Status.parse(arg);
+            } else if (Priority.parse(arg) != null) {
+                priorityFilter = Priority.parse(arg);
+            } else {
+                System.err.println("Usage: java TT watch [status] [priority] [--json]");
+                return;
+            }
+        }
+
+        TaskWatcher watcher = new TaskWatcher(tasksPath, new TaskFilter().status(statusFilter).priority(priorityFilter));
+        List<Task> tasks = watcher.start();
+        WritableByteChannel out = Channels.newChannel(System.out);
+        StringBuilder row = new StringBuilder(128);
+        if (json) {
+            for (Task task : tasks) {
+                TaskJsonWriter.writeEvent(out, "existing", task);
+            }
+        } else {
+            System.out.println("ID\tPriority\tStatus\t\tDescription\t\tCreated\t\t\tUpdated");
+            System.out.println(RULE);
+            for (Task task : tasks) {
+                System.out.println(appendRow(row, task));
+            }
+            System.out.println(RULE);
+            System.out.println("Watching " + tasks.size() + " tasks in " + tasksPath
+                    + " (+ added, ~ updated, - removed; Ctrl-C to stop)");
+        }
+        System.out.flush();
+        if (System.out.checkError()) {
+            return; // the reader has gone, e.g. the end of `watch | head`
+        }
+
+        final boolean ndjson = json;
+        watcher.watch((change, task) -> {
+            if (ndjson) {
+                TaskJsonWriter.writeEvent(out, change.toString(), task);
+            } else {
+                char marker = change == TaskWatcher.Change.ADDED ? '+' : change == TaskWatcher.Change.UPDATED ? '~' : '-';
+                System.out.println(marker + " " + appendRow(row, task));
+            }
+            System.out.flush();
+            return !System.out.checkError();
+        });
+    }
+
+    private static void handleCompact(String[] args) throws IOException {
+        if (shards != null) {
+            forEachShard(false, shard -> handleCompact(args));
+            return;
+        }
+
+        boolean compactJson = TaskJsonWriter.isCompact(tasksPath);
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--compact")) {
+                compactJson = true;
+            } else if (args[i].equals("--pretty")) {
+                compactJson = false;
+            }
+        }
+
+        List<Task> tasks = loadTasks();
+        saveTasks(tasks, compactJson);
+        System.out.println("Compacted " + tasks.size() + " tasks into " + tasksPath);
+    }
+
+    private static void handleExport(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java TT export <file.json|file" + TaskBinaryFormat.EXTENSION + "> [--compact]");
+            return;
+        }
+
+        Path target = Paths.get(args[1]);
+        if (ShardManifest.isManifest(target)) {
+            System.err.println("Cannot export to a shard manifest; use 'shard <n>' to split a store");
+            return;
+        }
+        boolean compactJson = args.length > 2 && args[2].equals("--compact");
+        List<Task> tasks = loadTasks();
+        boolean keepsNextId = TaskBinaryFormat.isBinary(tasksPath) || shards != null;
+        try {
+            writeSnapshot(target, tasks, keepsNextId ? nextId() : getNextId(tasks), compactJson);
+        } catch (IOException e) {
+            throw new IOException("Error exporting tasks: " + e.getMessage());
+        }
+        System.out.println("Exported " + tasks.size() + " tasks to " + target);
+    }
+
+    private static void handleImport(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java TT import <file.json|file" + TaskBinaryFormat.EXTENSION + ">");
+            return;
+        }
+
+        Path source = Paths.get(args[1]);
+        if (!Files.exists(source)) {
+            System.err.println("File not found: " + source);
+            return;
+        }
+
+        List<Task> tasks;
+        try {
+            tasks = readSnapshot(source);
+        } catch (IOException e) {
+            throw new IOException("Error importing tasks: " + e.getMessage());
+        }
+        if (shards != null) {
+            writeShards(shards.next(shards.getCount(), shards.getExtension(), getNextId(tasks)), tasks);
+        } else {
+            saveTasks(tasks);
+        }
+        System.out.println("Imported " + tasks.size() + " tasks from " + source + " into " + tasksPath);
+    }
+
+    private static void handleShard(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java TT shard <count> [json|ttb]");
+            return;
+        }
+
+        int count;
+        try {
+            count = Integer.parseInt(args[1]);
+        } catch (NumberFormatException e) {
+            count = 0;
+        }
+        if (count < 1 || count > ShardManifest.MAX_SHARDS) {
+            System.err.println("Shard count must be between 1 and " + ShardManifest.MAX_SHARDS);
+            return;
+        }
+
+        boolean sharded = ShardManifest.isManifest(tasksPath);
+        String extension = sharded ? (shards != null ? shards.getExtension() : ".json")
+                : TaskBinaryFormat.isBinary(tasksPath) ? TaskBinaryFormat.EXTENSION : ".json";
+        if (args.length > 2) {
+            switch (args[2].toLowerCase()) {
+                case "json" -> extension = ".json";
+                case "ttb" -> extension = TaskBinaryFormat.EXTENSION;
+                default -> {
+                    System.err.println("Invalid format. Valid options: json, ttb");
+                    return;
+                }
+            }
+        }
+
+        Path manifestPath = tasksPath;
+        if (!sharded) {
+            String name = tasksPath.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            manifestPath = tasksPath.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ShardManifest.EXTENSION);
+            if (Files.exists(manifestPath)) {
+                System.err.println("Shard manifest already exists: " + manifestPath);
+                System.err.println("Reshard it with: java TT --store " + manifestPath + " shard " + count);
+                return;
+            }
+        }
+
+        List<Task> tasks = loadTasks();
+        int nextId = Math.max(getNextId(tasks), shards != null ? shards.getNextId() : nextId());
+        ShardManifest manifest = shards != null
+                ? shards.next(count, extension, nextId)
+                : new ShardManifest(manifestPath, count, extension, 1, nextId);
+
+        // The source store stays as it is; a new manifest is locked while its shards are written
+        try (StoreLock lock = sharded ? null : StoreLock.acquireSeparate(manifestPath, false)) {
+            writeShards(manifest, tasks);
+        }
+        System.out.println("Split " + tasks.size() + " tasks into " + count + " shards listed in " + manifestPath);
+    }
+
+    /**
+     * Writes tasks into a new generation of shard files, then points the
+     * manifest at them and deletes the files of the generation it replaces.
+     * The caller holds the manifest lock exclusively.
+     */
+    private static void writeShards(ShardManifest manifest, List<Task> tasks) throws IOException {
+        List<List<Task>> parts = new ArrayList<>(manifest.getCount());
+        for (int i = 0; i < manifest.getCount(); i++) {
+            parts.add(new ArrayList<>());
+        }
+        for (Task task : tasks) {
+            parts.get(manifest.shardOf(task.getId())).add(task);
+        }
+
+        try (Metrics.Stopwatch timer = Metrics.time("save")) {
+            for (int i = 0; i < manifest.getCount(); i++) {
+                writeSnapshot(manifest.shard(i), parts.get(i), manifest.getNextId());
+            }
+            ShardManifest previous = ShardManifest.read(manifest.getPath());
+            manifest.write();
+            if (previous != null) {
+                for (Path shard : previous.shards()) {
+                    Files.deleteIfExists(shard);
+                    Files.deleteIfExists(new TaskLog(shard).getPath());
+                    Files.deleteIfExists(SearchIndex.pathFor(shard));
+                    Files.deleteIfExists(TaskStats.pathFor(shard));
+                    Files.deleteIfExists(shard.resolveSibling(shard.getFileName() + ".lock"));
+                }
+            }
+        } catch (IOException e) {
+            throw new IOException("Error saving tasks: " + e.getMessage());
+        }
+    }
+
+    private interface ShardAction {
+        void run(int shard) throws IOException;
+    }
+
+    /**
+     * Runs an action once per shard of {@link #shards}, with the shard locked
+     * and standing in for the whole store, as for a command naming one task.
+     */
+    private static void forEachShard(boolean shared, ShardAction action) throws IOException {
+        ShardManifest manifest = shards;
+        Path storePath = tasksPath;
+        shards = null;
+        try {
+            for (int i = 0; i < manifest.getCount(); i++) {
+                tasksPath = manifest.shard(i);
+                try (StoreLock lock = StoreLock.acquireSeparate(tasksPath, shared)) {
+                    action.run(i);
+                }
+            }
+        } finally {
+            tasksPath = storePath;
+            shards = manifest;
+        }
+    }
+
+    private static void handleBatch(String[] args) throws IOException {
+        BatchOptions options = BatchOptions.parse(args);
+        if (options == null) {
+            System.err.println("Usage: java TT batch [file|-] [--every <n>]");
+            System.err.println("Reads one command per line, e.g.: add \"Buy milk\" high");
+            return;
+        }
+
+        String input = options.text != null ? options.text : readBatchInput(options);
+        boolean ownsStore = resident == null;
+        if (ownsStore) {
+            resident = new TaskStore(tasksPath, loadTasks(), nextId());
+        }
+        pendingRecords = new ArrayList<>();
+        pendingBefore = new ArrayList<>();
+        pendingAfter = new ArrayList<>();
+        pendingTransitions = new ArrayList<>();
+
+        int lineNumber = 0;
+        int applied = 0;
+        int failed = 0;
+        PrintStream originalErr = System.err;
+        try (BufferedReader reader = new BufferedReader(new StringReader(input))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+
+                // Capture each line's error output so it can be reported with its line number
+                ByteArrayOutputStream errors = new ByteArrayOutputStream();
+                System.setErr(new PrintStream(errors, true));
+                try {
+                    String[] lineArgs = splitCommandLine(trimmed);
+                    String command = lineArgs[0].toLowerCase();
+                    if (command.equals("batch") || command.equals("b") || command.equals("serve")) {
+                        System.err.println("'" + command + "' cannot be used inside a batch");
+                    } else {
+                        execute(lineArgs);
+                    }
+                } catch (IllegalArgumentException e) {
+                    System.err.println(e.getMessage());
+                } finally {
+                    System.setErr(originalErr);
+                }
+
+                if (errors.size() > 0) {
+                    failed++;
+                    for (String message : errors.toString().split("\\R")) {
+                        System.err.println("Line " + lineNumber + ": " + message);
+                    }
+                } else {
+                    applied++;
+                }
+
+                if (options.every > 0 && pendingRecords.size() >= options.every) {
+                    flushBatch();
+                }
+            }
+        } finally {
+            boolean saved = false;
+            try {
+                flushBatch();
+                saved = true;
+            } finally {
+                pendingRecords = null;
+                pendingBefore = pendingAfter = null;
+                pendingTransitions = null;
+                if (ownsStore) {
+                    resident = null;
+                } else if (!saved) {
+                    // The daemon's store already holds the unsaved lines; go back to what is on disk
+                    resident = null;
+                    resident = new TaskStore(tasksPath, loadTasks(), nextId());
+                }
+            }
+        }
+
+        System.out.println("Batch complete: " + applied + " commands applied, " + failed + " failed");
+    }
+
+    /**
+     * Writes the records collected by a batch to the log in one append, then
+     * the stats and history derived from them, so a failed append leaves
+     * neither describing changes the store does not hold.
+     */
+    private static void flushBatch() throws IOException {
+        if (pendingRecords.isEmpty()) {
+            return;
+        }
+
+        // Kept pending until the append succeeds, so the batch's final flush retries a failed one
+        TaskLog log = appendToLog(pendingRecords);
+        List<Task> before = new ArrayList<>(pendingBefore);
+        List<Task> after = new ArrayList<>(pendingAfter);
+        List<TaskHistory.Event> transitions = new ArrayList<>(pendingTransitions);
+        pendingRecords.clear();
+        pendingBefore.clear();
+        pendingAfter.clear();
+        pendingTransitions.clear();
+
+        writeStats(before, after);
+        writeTransitions(transitions);
+        if (log.size() > TaskLog.COMPACT_THRESHOLD) {
+            saveTasks(loadTasks());
+        }
+    }
+
+    private static TaskLog appendToLog(List<String> records) throws IOException {
+        TaskLog log = new TaskLog(tasksPath);
+        try (Metrics.Stopwatch timer = Metrics.time("log.append")) {
+            log.appendAll(records);
+            Metrics.count("log.records.appended", records.size());
+        } catch (IOException e) {
+            throw new IOException("Error saving tasks: " + e.getMessage());
+        }
+        return log;
+    }
+
+    private static String readBatchInput(BatchOptions options) throws IOException {
+        if (options.file == null || options.file.equals("-")) {
+            return new String(System.in.readAllBytes());
+        }
+        try {
+            return Files.readString(Paths.get(options.file));
+        } catch (IOException e) {
+            throw new IOException("Error reading batch file: " + e.getMessage());
+        }
+    }
+
+    /** Splits a batch line into arguments the way a shell would for simple quoting. */
+    private static String[] splitCommandLine(String line) {
+        List<String> args = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inArg = false;
+        char quote = 0;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else if (c == '\\' && quote == '"' && i + 1 < line.length()) {
+                    current.append(line.charAt(++i));
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+                inArg = true;
+            } else if (c == '\\' && i + 1 < line.length()) {
+                current.append(line.charAt(++i));
+                inArg = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inArg) {
+                    args.add(current.toString());
+                    current.setLength(0);
+                    inArg = false;
+                }
+            } else {
+                current.append(c);
+                inArg = true;
+            }
+        }
+
+        if (quote != 0) {
+            throw new IllegalArgumentException("Unterminated quote");
+        }
+        if (inArg) {
+            args.add(current.toString());
+        }
+        return args.toArray(new String[0]);
+    }
+
+    private static class BatchOptions {
+        String file;
+        String text;
+        int every;
+
+        /** Returns null if the arguments are not valid batch options. */
+        static BatchOptions parse(String[] args) {
+            BatchOptions options = new BatchOptions();
+            try {
+                for (int i = 1; i < args.length; i++) {
+                    switch (args[i]) {
+                        case "--every" -> options.every = Integer.parseInt(args[++i]);
+                        case "--text" -> options.text = args[++i];
+                        default -> {
+                            if (options.file != null) return null;
+                            options.file = args[i];
+                        }
+                    }
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                return null;
+            }
+            return options.every >= 0 ? options : null;
+        }
+    }
+
+    /**
+     * Tasks a bulk command applies to: those listed by --ids, those matching
+     * the --where conditions and update-time bounds, or those doing both.
+     */
+    private static class BulkQuery {
+        static final int MAX_IDS = 10_000_000;
+
+        int[] ids; // null selects by the filter alone
+        final TaskFilter filter = new TaskFilter();
+
+        static boolean isQuery(String arg) {
+            return arg.equals("--ids") || arg.equals("--where") || arg.startsWith("--updated-");
+        }
+
+        /** Parses args[1] up to end; returns null if they are not a valid query or select every task. */
+        static BulkQuery parse(String[] args, int end) {
+            BulkQuery query = new BulkQuery();
+            boolean conditions = false;
+            boolean where = false;
+            long updatedFrom = Long.MIN_VALUE;
+            long updatedTo = Long.MAX_VALUE;
+            try {
+                for (int i = 1; i < end; i++) {
+                    String arg = args[i];
+                    if (arg.equals("--ids") && i + 1 < end) {
+                        query.ids = parseIds(args[++i]);
+                        if (query.ids == null) return null;
+                    } else if (arg.equals("--where")) {
+                        where = true;
+                    } else if ((arg.equals("--updated-before") || arg.equals("--updated-since")) && i + 1 < end) {
+                        long time = parseTimeArgument(args[++i], false);
+                        if (time == Task.NO_TIMESTAMP) return null;
+                        if (arg.equals("--updated-before")) {
+                            updatedTo = time - 1;
+                        } else {
+                            updatedFrom = time;
+                        }
+                        conditions = true;
+                    } else if (where && arg.startsWith("status=")) {
+                        Status status = Status.parse(arg.substring(7).toLowerCase());
+                        if (status == null) return null;
+                        query.filter.status(status);
+                        conditions = true;
+                    } else if (where && arg.startsWith("priority=")) {
+                        Priority priority = Priority.parse(arg.substring(9).toLowerCase());
+                        if (priority == null) return null;
+                        query.filter.priority(priority);
+                        conditions = true;
+                    } else {
+                        return null;
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            query.filter.updated(updatedFrom, updatedTo);
+            return query.ids != null || conditions ? query : null;
+        }
+
+        /** Expands "3,7,10-250" into sorted, distinct IDs; null if malformed or too many. */
+        static int[] parseIds(String text) {
+            IntIntMap seen = new IntIntMap();
+            for (String part : text.split(",")) {
+                if (part.isEmpty()) continue;
+                int dash = part.indexOf('-', 1);
+                int from = Integer.parseInt(dash < 0 ? part : part.substring(0, dash));
+                int to = dash < 0 ? from : Integer.parseInt(part.substring(dash + 1));
+                if (from > to || (long) to - from + seen.size() >= MAX_IDS) {
+                    return null;
+                }
+                for (int id = from; id <= to; id++) {
+                    seen.put(id, 0);
+                    if (id == Integer.MAX_VALUE) break;
+                }
+            }
+            int[] ids = seen.keys();
+            Arrays.sort(ids);
+            return ids.length > 0 ? ids : null;
+        }
+    }
+
+    private static void handleServe() throws IOException {
+        if (resident != null) {
+            System.err.println("Already serving " + tasksPath);
+            return;
+        }
+
+        try (StoreLock lock = StoreLock.acquire(tasksPath, true)) {
+            resident = new TaskStore(tasksPath, loadTasks(), nextId());
+        }
+        Path metricsPath = tasksPath.resolveSibling(tasksPath.getFileName() + ".prom");
+        Metrics.exportPeriodically(metricsPath, METRICS_INTERVAL_MILLIS);
+        System.out.println("Writing metrics to " + metricsPath);
+        TaskDaemon.serve(TaskDaemon.socketPath(tasksPath));
+    }
+
+    /**
+     * The daemon has its own working directory and stdin, so resolve file
+     * arguments and read batch input on this side before forwarding.
+     */
+    private static String[] forwardableArgs(String[] args) throws IOException {
+        String command = args[0].toLowerCase();
+        if (command.equals("--timings") && args.length > 1) {
+            String[] rest = forwardableArgs(Arrays.copyOfRange(args, 1, args.length));
+            String[] forwarded = new String[rest.length + 1];
+            forwarded[0] = args[0];
+            System.arraycopy(rest, 0, forwarded, 1, rest.length);
+            args = forwarded;
+        } else if (args.length >= 2 && (command.equals("export") || command.equals("import"))) {
+            args = args.clone();
+            args[1] = Paths.get(args[1]).toAbsolutePath().toString();
+        } else if (command.equals("batch") || command.equals("b")) {
+            BatchOptions options = BatchOptions.parse(args);
+            if (options != null && options.text == null) {
+                List<String> forwarded = new ArrayList<>(List.of(args[0], "--text", readBatchInput(options)));
+                if (options.every > 0) {
+                    forwarded.addAll(List.of("--every", String.valueOf(options.every)));
+                }
+                args = forwarded.toArray(new String[0]);
+            }
+        }
+        return args;
+    }
+
+    private static String truncateString(String str, int maxLength) {
+        if (str.length() <= maxLength) {
+            return str;
+        }
+        return str.substring(0, maxLength - 3) + "...";
+    }
+
+    /**
+     * Loads every task. A binary snapshot with no pending log entries is
+     * returned as a view that decodes records from the memory map on demand.
+     */
+    private static List<Task> loadTasks() throws IOException {
+        if (resident != null) {
+            return resident.list(new TaskFilter());
+        }
+        if (shards != null) {
+            TaskTable table = loadShards(new TaskFilter());
+            List<Task> tasks = new ArrayList<>(table.size());
+            for (int row = 0; row < table.size(); row++) {
+                tasks.add(table.task(row));
+            }
+            return tasks;
+        }
+
+        TaskLog log = new TaskLog(tasksPath);
+
+        try (Metrics.Stopwatch timer = Metrics.time("load")) {
+            if (TaskBinaryFormat.isBinary(tasksPath) && log.size() == 0) {
+                List<Task> tasks = Files.exists(tasksPath)
+                        ? TaskBinaryFormat.read(tasksPath, new TaskFilter())
+                        : new ArrayList<>();
+                Metrics.count("tasks.loaded", tasks.size());
+                return tasks;
+            }
+
+            List<Task> tasks = Files.exists(tasksPath) ? readSnapshot(tasksPath) : new ArrayList<>();
+            try (Metrics.Stopwatch replay = Metrics.time("log.replay")) {
+                log.replay(tasks);
+            }
+            return tasks;
+        } catch (IOException e) {
+            throw new IOException("Error reading tasks file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads tasks into columns for scanning. A binary snapshot only reads the
+     * records matching the filter plus those the pending log touches; other
+     * stores load every row, so callers still filter.
+     */
+    private static TaskTable loadTable(TaskFilter filter) throws IOException {
+        if (resident != null) {
+            return TaskTable.of(resident.list(filter));
+        }
+        if (shards != null) {
+            return loadShards(filter);
+        }
+
+        TaskLog log = new TaskLog(tasksPath);
+
+        try (Metrics.Stopwatch timer = Metrics.time("load")) {
+            TaskTable table;
+            if (!Files.exists(tasksPath)) {
+                table = new TaskTable();
+            } else if (TaskBinaryFormat.isBinary(tasksPath)) {
+                try (Metrics.Stopwatch read = Metrics.time("read.binary")) {
+                    table = TaskBinaryFormat.readTable(tasksPath, filter, log.touchedIds());
+                }
+            } else {
+                try (Metrics.Stopwatch parse = Metrics.time("parse.json")) {
+                    table = TaskJsonLoader.readTable(tasksPath);
+                    Metrics.count("snapshot.bytes.read", Files.size(tasksPath));
+                }
+            }
+            Metrics.count("tasks.loaded", table.size());
+            try (Metrics.Stopwatch replay = Metrics.time("log.replay")) {
+                log.replay(table);
+            }
+            return table;
+        } catch (IOException e) {
+            throw new IOException("Error reading tasks file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads every shard in parallel, each under its own shared lock, and merges
+     * them in ID order. Metrics are not thread-safe, so the shards are timed
+     * together as one load.
+     */
+    private static TaskTable loadShards(TaskFilter filter) throws IOException {
+        try (Metrics.Stopwatch timer = Metrics.time("load")) {
+            List<TaskTable> parts = shards.shards().parallelStream().map(shard -> {
+                try {
+                    return loadShard(shard, filter);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).toList();
+            TaskTable table = TaskTable.merge(parts);
+            Metrics.count("tasks.loaded", table.size());
+            return table;
+        } catch (UncheckedIOException e) {
+            throw new IOException("Error reading tasks file: " + e.getCause().getMessage());
+        }
+    }
+
+    private static TaskTable loadShard(Path shard, TaskFilter filter) throws IOException {
+        try (StoreLock lock = StoreLock.acquireSeparate(shard, true)) {
+            TaskLog log = new TaskLog(shard);
+            TaskTable table;
+            if (!Files.exists(shard)) {
+                table = new TaskTable();
+            } else if (TaskBinaryFormat.isBinary(shard)) {
+                table = TaskBinaryFormat.readTable(shard, filter, log.touchedIds());
+            } else {
+                table = TaskJsonLoader.readTable(shard);
+            }
+            log.replay(table);
+            return table;
+        }
+    }
+
+    /**
+     * Looks up a single task, including any pending log records. Binary stores
+     * resolve the ID through their stored ID table and decode only that record.
+     */
+    private static Task findTask(int id) throws IOException {
+        if (resident != null) {
+            return resident.get(id);
+        }
+
+        List<Task> tasks;
+
+        try {
+            if (TaskBinaryFormat.isBinary(tasksPath) && Files.exists(tasksPath)) {
+                tasks = new ArrayList<>();
+                Task task = TaskBinaryFormat.find(tasksPath, id);
+                if (task != null) {
+                    tasks.add(task);
+                }
+                new TaskLog(tasksPath).replay(tasks);
+            } else {
+                tasks = loadTasks();
+            }
+        } catch (IOException e) {
+            throw new IOException("Error reading tasks file: " + e.getMessage());
+        }
+
+        for (Task task : tasks) {
+            if (task.getId() == id) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Looks up several tasks, including pending log records, in ascending ID
+     * order. Absent IDs are skipped. Binary stores decode only those records.
+     */
+    private static List<Task> findTasks(int[] ids) throws IOException {
+        if (shards != null) {
+            ShardManifest manifest = shards;
+            List<Task> found = new ArrayList<>(ids.length);
+            forEachShard(true, shard -> found.addAll(findTasks(
+                    Arrays.stream(ids).filter(id -> manifest.shardOf(id) == shard).toArray())));
+            found.sort(Comparator.comparingInt(Task::getId));
+            return found;
+        }
+
+        List<Task> tasks;
+
+        try {
+            if (resident != null) {
+                tasks = new ArrayList<>(ids.length);
+                for (int id : ids) {
+                    Task task = resident.get(id);
+                    if (task != null) {
+                        tasks.add(task);
+                    }
+                }
+                return tasks;
+            }
+            if (TaskBinaryFormat.isBinary(tasksPath) && Files.exists(tasksPath)) {
+                tasks = TaskBinaryFormat.findAll(tasksPath, ids);
+                new TaskLog(tasksPath).replay(tasks);
+            } else {
+                tasks = findJsonObjects(ids);
+                if (tasks == null) {
+                    tasks = loadTasks();
+                }
+            }
+        } catch (IOException e) {
+            throw new IOException("Error reading tasks file: " + e.getMessage());
+        }
+
+        IntIntMap wanted = new IntIntMap(ids.length);
+        for (int id : ids) {
+            wanted.put(id, 0);
+        }
+        List<Task> found = new ArrayList<>(ids.length);
+        for (Task task : tasks) {
+            if (wanted.containsKey(task.getId())) {
+                found.add(task);
+            }
+        }
+        found.sort(Comparator.comparingInt(Task::getId));
+        return found;
+    }
+
+    /**
+     * Reads a few tasks of a JSON snapshot through the object offsets in a
+     * current search index, plus pending log records. Returns null when there
+     * is no such index, when so many tasks are wanted that one full parse is
+     * cheaper, or when the index turns out not to match the snapshot; a stale
+     * index is deleted so the next search rebuilds it.
+     */
+    private static List<Task> findJsonObjects(int[] ids) throws IOException {
+        SearchIndex index = SearchIndex.open(tasksPath);
+        if (index == null || ids.length > index.objectCount() / 8) {
+            return null;
+        }
+        List<Task> tasks;
+        try (Metrics.Stopwatch timer = Metrics.time("read.indexed")) {
+            tasks = index.readTasks(tasksPath, ids);
+        }
+        if (tasks == null) {
+            Files.deleteIfExists(SearchIndex.pathFor(tasksPath));
+            return null;
+        }
+        Metrics.count("tasks.loaded", tasks.size());
+        new TaskLog(tasksPath).replay(tasks);
+        return tasks;
+    }
+
+    /**
+     * Returns the ID for the next new task. Binary stores keep a high-water
+     * mark in their header, so this does not read any task records.
+     */
+    private static int nextId() throws IOException {
+        if (resident != null) {
+            return resident.nextId();
+        }
+        if (shards != null) {
+            return shards.getNextId();
+        }
+        if (!TaskBinaryFormat.isBinary(tasksPath)) {
+            return getNextId(loadTasks());
+        }
+
+        try {
+            TaskLog log = new TaskLog(tasksPath);
+            log.replay(new ArrayList<>());
+            return Math.max(TaskBinaryFormat.readNextId(tasksPath), log.getMaxAddedId() + 1);
+        } catch (IOException e) {
+            throw new IOException("Error reading tasks file: " + e.getMessage());
+        }
+    }
+
+    private static List<Task> readSnapshot(Path path) throws IOException {
+        boolean binary = TaskBinaryFormat.isBinary(path);
+        try (Metrics.Stopwatch timer = Metrics.time(binary ? "read.binary" : "parse.json")) {
+            List<Task> tasks = binary ? TaskBinaryFormat.read(path) : TaskJsonLoader.readAll(path);
+            Metrics.count("snapshot.bytes.read", Files.size(path));
+            Metrics.count("tasks.loaded", tasks.size());
+            return tasks;
+        }
+    }
+
+    /**
+     * Writes the snapshot to a temporary file, syncs it and renames it over the
+     * target, so a crash mid-write never leaves a truncated store behind. A
+     * JSON file keeps the layout it already has.
+     */
+    private static void writeSnapshot(Path path, List<Task> tasks, int nextId) throws IOException {
+        writeSnapshot(path, tasks, nextId, TaskJsonWriter.isCompact(path));
+    }
+
+    /** Writes the snapshot; compact selects the one-object-per-line layout for JSON files. */
+    private static void writeSnapshot(Path path, List<Task> tasks, int nextId, boolean compact) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        if (TaskBinaryFormat.isBinary(path)) {
+            try (Metrics.Stopwatch timer = Metrics.time("write.binary")) {
+                TaskBinaryFormat.write(temp, tasks, nextId);
+            }
+        } else {
+            try (Metrics.Stopwatch timer = Metrics.time("write.json")) {
+                TaskJsonWriter.write(temp, tasks, compact);
+            }
+        }
+        try (Metrics.Stopwatch timer = Metrics.time("fsync");
+             FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+            Metrics.count("snapshot.bytes.written", channel.size());
+        }
+        Metrics.count("tasks.saved", tasks.size());
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** The store whose history a change is recorded in: the manifest's for a shard. */
+    private static Path historyStore() {
+        if (manifestPath != null) {
+            return manifestPath;
+        }
+        return shards != null ? shards.getPath() : tasksPath;
+    }
+
+    /** Appends a status transition at the given epoch seconds to the store's history. */
+    private static void recordTransition(int id, Status from, Status to, long seconds) throws IOException {
+        if (pendingTransitions != null) {
+            pendingTransitions.add(new TaskHistory.Event(id, from, to, seconds * 1000));
+            return;
+        }
+        try (Metrics.Stopwatch timer = Metrics.time("history.append")) {
+            TaskHistory.append(historyStore(), id, from, to, seconds * 1000);
+        } catch (IOException e) {
+            throw new IOException("Error saving history: " + e.getMessage());
+        }
+    }
+
+    /** Appends several status transitions, with their own timestamps, in one write; a batch holds them until its flush. */
+    private static void recordTransitions(List<TaskHistory.Event> transitions) throws IOException {
+        if (pendingTransitions != null) {
+            pendingTransitions.addAll(transitions);
+            return;
+        }
+        writeTransitions(transitions);
+    }
+
+    private static void writeTransitions(List<TaskHistory.Event> transitions) throws IOException {
+        try (Metrics.Stopwatch timer = Metrics.time("history.append")) {
+            TaskHistory.appendAll(historyStore(), transitions);
+        } catch (IOException e) {
+            throw new IOException("Error saving history: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Moves one task's change into the stats rollups, if the store keeps them.
+     * Called before the change is persisted, so a compaction it triggers
+     * rebuilds rollups that already include it.
+     */
+    private static void trackStats(Task before, Task after) throws IOException {
+        trackStats(Collections.singletonList(before), Collections.singletonList(after));
+    }
+
+    /**
+     * Moves several tasks' changes into the rollups with one read and write;
+     * the lists pair up by index. A batch copies them, as its tasks keep
+     * changing, and writes them after its log records.
+     */
+    private static void trackStats(List<Task> before, List<Task> after) throws IOException {
+        before = datedByCompletion(before, after);
+        if (pendingBefore != null) {
+            for (int i = 0; i < before.size(); i++) {
+                pendingBefore.add(before.get(i) != null ? before.get(i).copy() : null);
+                pendingAfter.add(after.get(i) != null ? after.get(i).copy() : null);
+            }
+            return;
+        }
+        writeStats(before, after);
+    }
+
+    /**
+     * Rollups count a done task on the day it was completed, so a done task
+     * that stops being done is returned as a copy dated at its completion. A
+     * done task that is edited without a completion in the history, as it was
+     * done before the history was kept, has one recorded at its old
+     * updatedAt, so a rebuild still finds the day once updatedAt moves on.
+     */
+    private static List<Task> datedByCompletion(List<Task> before, List<Task> after) throws IOException {
+        Map<Integer, Long> completions = null;
+        List<Task> dated = before;
+        List<TaskHistory.Event> recorded = new ArrayList<>();
+        for (int i = 0; i < before.size(); i++) {
+            Task task = before.get(i);
+            Task changed = after.get(i);
+            boolean stillDone = changed != null && changed.getStatus() == Status.DONE;
+            if (task == null || task.getStatus() != Status.DONE
+                    || (stillDone && changed.getUpdatedAt() == task.getUpdatedAt())) {
+                continue;
+            }
+            if (completions == null) {
+                completions = completions();
+            }
+            Long completed = completions.get(task.getId());
+            if (!stillDone && completed != null && completed != task.getUpdatedAt()) {
+                if (dated == before) {
+                    dated = new ArrayList<>(before);
+                }
+                Task copy = task.copy();
+                copy.setUpdatedAt(completed);
+                dated.set(i, copy);
+            } else if (stillDone && completed == null && task.getUpdatedAt() != Task.NO_TIMESTAMP) {
+                recorded.add(new TaskHistory.Event(task.getId(), Status.DONE, Status.DONE, task.getUpdatedAt() * 1000));
+            }
+        }
+        if (!recorded.isEmpty()) {
+            recordTransitions(recorded);
+        }
+        return dated;
+    }
+
+    /** When each done task was completed, from the history plus a batch's pending events. */
+    private static Map<Integer, Long> completions() throws IOException {
+        Map<Integer, Long> completions;
+        try (Metrics.Stopwatch timer = Metrics.time("history.scan")) {
+            completions = TaskHistory.completions(historyStore());
+        } catch (IOException e) {
+            throw new IOException("Error reading history: " + e.getMessage());
+        }
+        if (pendingTransitions != null) {
+            for (TaskHistory.Event event : pendingTransitions) {
+                if (event.getTo() == Status.DONE) {
+                    completions.put(event.getTaskId(), Math.floorDiv(event.getMillis(), 1000));
+                } else {
+                    completions.remove(event.getTaskId());
+                }
+            }
+        }
+        return completions;
+    }
+
+    private static void writeStats(List<Task> before, List<Task> after) throws IOException {
+        if (before.isEmpty()) {
+            return;
+        }
+        try (Metrics.Stopwatch timer = Metrics.time("stats.update")) {
+            TaskStats stats = TaskStats.read(tasksPath);
+            if (stats != null) {
+                for (int i = 0; i < before.size(); i++) {
+                    stats.apply(before.get(i), after.get(i));
+                }
+                stats.write(tasksPath);
+            }
+        } catch (IOException e) {
+            throw new IOException("Error saving stats: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Records a single mutation in the log, folding the log into a fresh
+     * snapshot once it has grown past the compaction threshold.
+     */
+    private static void persist(String record) throws IOException {
+        if (pendingRecords != null) {
+            resident.apply(record);
+            pendingRecords.add(record);
+            return;
+        }
+
+        TaskLog log = new TaskLog(tasksPath);
+
+        try (Metrics.Stopwatch timer = Metrics.time("log.append")) {
+            log.append(record);
+            Metrics.count("log.records.appended", 1);
+        } catch (IOException e) {
+            throw new IOException("Error saving tasks: " + e.getMessage());
+        }
+
+        if (resident != null) {
+            resident.apply(record);
+        }
+
+        if (log.size() > TaskLog.COMPACT_THRESHOLD) {
+            saveTasks(loadTasks());
+        }
+    }
+
+    /** Records several mutations with one log append, compacting afterwards as {@link #persist} does. */
+    private static void persistAll(List<String> records) throws IOException {
+        if (pendingRecords != null) {
+            for (String record : records) {
+                resident.apply(record);
+            }
+            pendingRecords.addAll(records);
+            return;
+        }
+
+        TaskLog log = appendToLog(records);
+        if (resident != null) {
+            for (String record : records) {
+                resident.apply(record);
+            }
+        }
+
+        if (log.size() > TaskLog.COMPACT_THRESHOLD) {
+            saveTasks(loadTasks());
+        }
+    }
+
+    /**
+     * Records a change to a task that already exists. A binary snapshot is
+     * patched in place unless the log holds records for the task, which
+     * replay would apply over the patch, or a current search index lists
+     * the description being changed; those changes go through the log.
+     */
+    private static void persistChange(Task task, String record, boolean descriptionChanged) throws IOException {
+        if (pendingRecords == null && TaskBinaryFormat.isBinary(tasksPath) && Files.exists(tasksPath)) {
+            TaskLog log = new TaskLog(tasksPath);
+            boolean logged = log.size() > 0 && Arrays.binarySearch(log.touchedIds(), task.getId()) >= 0;
+            boolean indexed = descriptionChanged && SearchIndex.open(tasksPath) != null;
+
+            if (!logged && !indexed) {
+                int written;
+                try (Metrics.Stopwatch timer = Metrics.time("patch.binary")) {
+                    BasicFileAttributes before = Files.readAttributes(tasksPath, BasicFileAttributes.class);
+                    written = TaskBinaryFormat.patch(tasksPath, task, descriptionChanged);
+                    if (written > 0 && !descriptionChanged) {
+                        SearchIndex.restamp(tasksPath, before.size(), before.lastModifiedTime().toMillis());
+                    }
+                } catch (IOException e) {
+                    throw new IOException("Error saving tasks: " + e.getMessage());
+                }
+
+                if (written > 0) {
+                    Metrics.count("snapshot.bytes.patched", written);
+                    if (resident != null) {
+                        resident.apply(record);
+                    }
+                    if (descriptionChanged && TaskBinaryFormat.relocatedBytes(tasksPath) > TaskLog.COMPACT_THRESHOLD) {
+                        saveTasks(loadTasks());
+                    }
+                    return;
+                }
+            }
+        }
+
+        persist(record);
+    }
+
+    private static void saveTasks(List<Task> tasks) throws IOException {
+        saveTasks(tasks, TaskJsonWriter.isCompact(tasksPath));
+    }
+
+    private static void saveTasks(List<Task> tasks, boolean compactJson) throws IOException {
+        // Carry the binary high-water mark over so IDs of deleted tasks stay retired
+        int nextId = getNextId(tasks);
+        if (TaskBinaryFormat.isBinary(tasksPath)) {
+            nextId = Math.max(nextId, nextId());
+        }
+
+        try (Metrics.Stopwatch timer = Metrics.time("save")) {
+            writeSnapshot(tasksPath, tasks, nextId, compactJson);
+            if (Files.exists(SearchIndex.pathFor(tasksPath))) {
+                try (Metrics.Stopwatch index = Metrics.time("search.index")) {
+                    SearchIndex.write(tasksPath, tasks);
+                }
+            }
+            if (Files.exists(TaskStats.pathFor(tasksPath))) {
+                Map<Integer, Long> completions = completions();
+                try (Metrics.Stopwatch rollup = Metrics.time("stats.rollup")) {
+                    TaskStats.compute(tasks, completions).write(tasksPath);
+                }
+                if (pendingBefore != null) {
+                    // The rollups now count every task as saved, including a batch's changes so far
+                    pendingBefore.clear();
+                    pendingAfter.clear();
+                }
+            }
+            new TaskLog(tasksPath).clear();
+            if (resident != null) {
+                resident = new TaskStore(tasksPath, tasks, nextId);
+            }
+        } catch (IOException e) {
+            throw new IOException("Error saving tasks: " + e.getMessage());
+        }
+    }
+
+    private static int getNextId(List<Task> tasks) {
+        int max = 0;
+        for (Task task : tasks) {
+            max = Math.max(max, task.getId());
+        }
+        return max + 1;
+    }
+
+    private static long getCurrentTimestamp() {
+        return Task.now();
+    }
+
+    /**
+     * Parses a command-line time as "yyyy-MM-dd", "yyyy-MM-dd HH:mm:ss" or with
+     * a 'T' separator. A bare date means the start of the day, or its last
+     * second when it closes a range. Returns NO_TIMESTAMP if it is not valid.
+     */
+    private static long parseTimeArgument(String text, boolean endOfDay) {
+        String normalized = text.trim().replace('T', ' ');
+        if (normalized.length() == 10) {
+            normalized += endOfDay ? " 23:59:59" : " 00:00:00";
+        }
+        return Task.parseTimestamp(normalized);
+    }
+
+    private static void printUsage() {
+        System.out.println("Task Tracker CLI");
+        System.out.println("Usage:");
         System.out.println("  java TaskTracker add \"Task description\" [priority]         # or 'a'");
         System.out.println("  java TaskTracker update <id> \"New description\"            # or 'u'");
         System.out.println("  java TaskTracker delete <id>                                # or 'd'");
         System.out.println("  java TaskTracker priority <id> <priority>                   # or 'p'");
         System.out.println("  java TaskTracker mark-in-progress <id>                      # or 'mip'");
         System.out.println("  java TaskTracker mark-done <id>                             # or 'md'");
+        System.out.println("  java TaskTracker mark-done <query>                          # also mark-in-progress, delete and priority <query>");
+        System.out.println("       <query> = --ids 3,7,10-250 and/or --where status=<s>   # <priority>: change every selected task in one pass");
+        System.out.println("       priority=<p> [--updated-before <ts>] [--updated-since <ts>]");
         System.out.println("  java TaskTracker list [status] [priority] [--sort-priority] # or 'l'");
+        System.out.println("       [--limit <n>] [--offset <n>] [--after <id>]            # page through large lists");
+        System.out.println("       [--updated-since <ts>] [--created-between <ts> <ts>]   # times as yyyy-MM-dd or 'yyyy-MM-dd HH:mm:ss'");
+        System.out.println("  java TaskTracker show <id>                                  # or 's'");
+        System.out.println("  java TaskTracker next [k]                                   # or 'n'; k most urgent open tasks (default 5)");
+        System.out.println("  java TaskTracker search <terms> [--status <s>] [--priority <p>] [--limit <n>]");
+        System.out.println("                                                              # tasks containing every term; 'rep*' matches prefixes");
+        System.out.println("  java TaskTracker changes --since <ts>                       # tasks updated since ts as JSON, oldest first");
+        System.out.println("  java TaskTracker stats [--days <n>] [--rebuild]             # counts by status and priority, completions per");
+        System.out.println("                                                              # day and median time to done, from kept rollups");
+        System.out.println("  java TaskTracker history <id>                               # status transitions of one task");
+        System.out.println("  java TaskTracker cycle-time [--since <ts>]                  # start-to-done and created-to-done percentiles");
+        System.out.println("  java TaskTracker compact [--compact|--pretty]               # fold the change log into the store;");
+        System.out.println("                                                              # optionally switch the JSON layout");
+        System.out.println("  java TaskTracker export <file> [--compact]                  # write the store as .json or .ttb;");
+        System.out.println("                                                              # --compact puts one task per line");
+        System.out.println("  java TaskTracker import <file>                              # replace the store from .json or .ttb");
+        System.out.println("  java TaskTracker shard <n> [json|ttb]                       # split the store into n shard files listed in");
+        System.out.println("                                                              # <store>.shards, or reshard a .shards store");
+        System.out.println("  java TaskTracker watch [status] [priority] [--json]         # print matching tasks, then each change as it");
+        System.out.println("                                                              # happens; --json writes one JSON event per line");
+        System.out.println("  java TaskTracker batch [file|-] [--every <n>]               # or 'b'; one command per line, saved once");
+        System.out.println("  java TaskTracker serve                                      # keep the store in memory; other calls forward to it;");
+        System.out.println("                                                              # metrics go to <store>.prom every 10 s");
+        System.out.println();
+        System.out.println("Options:");
+        System.out.println("  --store <file>    Use another store file; a .ttb extension selects the binary format,");
+        System.out.println("                    a .shards extension a sharded store");
+        System.out.println("  --timings         Print the time spent in each phase of the command to stderr");
         System.out.println();
         System.out.println("Priority options: high, medium (default), low");
         System.out.println("Status options: all (default), todo, in-progress, done");
@@ -536,6 +2405,15 @@ public class TaskTracker {
         System.out.println("  java TaskTracker list");
         System.out.println("  java TaskTracker l todo high");
         System.out.println("  java TaskTracker l --sort-priority");
+        System.out.println("  java TaskTracker l todo --limit 50 --after 1200");
+        System.out.println("  java TaskTracker l done --updated-since 2025-06-01");
+        System.out.println("  java TaskTracker changes --since '2025-06-01 08:00:00'");
+        System.out.println("  java TaskTracker stats --days 30");
+        System.out.println("  java TaskTracker history 1");
+        System.out.println("  java TaskTracker cycle-time --since 2025-06-01");
+        System.out.println("  java TaskTracker watch in-progress --json");
+        System.out.println("  java TaskTracker show 1");
+        System.out.println("  java TaskTracker search groc* --status todo");
         System.out.println("  java TaskTracker priority 1 high");
         System.out.println("  java TaskTracker p 1 low");
         System.out.println("  java TaskTracker mark-in-progress 1");
@@ -544,5 +2422,9 @@ public class TaskTracker {
         System.out.println("  java TaskTracker md 1");
         System.out.println("  java TaskTracker update 1 \"Buy groceries and cook dinner\"");
         System.out.println("  java TaskTracker delete 1");
+        System.out.println("  java TaskTracker export tasks.ttb");
+        System.out.println("  java TaskTracker --store tasks.ttb l todo");
+        System.out.println("  java TaskTracker shard 4 ttb");
+        System.out.println("  java TaskTracker --store tasks.shards md 7");
     }
 }
\ No newline at end of file
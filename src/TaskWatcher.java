@@ -0,0 +1,234 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows the changes to a store for `watch`, keeping its tasks in memory.
+ *
+ * A {@link WatchService} on the store's directory wakes the watcher, which
+ * then reads only what changed under a shared store lock:
+ * - records appended to the change log since the last read, applied like
+ *   the daemon applies them;
+ * - for a binary store patched in place, the records whose bytes differ
+ *   from the copy taken last time, found by comparing that copy with the
+ *   mapped file and decoded by ID;
+ * - when the snapshot is replaced by a compaction, import or rewrite, the
+ *   whole store, compared with the view task by task.
+ * Each task that enters, changes within or leaves the filtered set is
+ * passed to the listener.
+ */
+public class TaskWatcher {
+    private static final long POLL_SECONDS = 2; // also catches changes the watch service misses
+
+    public enum Change {
+        ADDED("added"), UPDATED("updated"), REMOVED("removed");
+
+        private final String value;
+
+        Change(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+
+    public interface Listener {
+        /** Returns false to stop watching, e.g. once output can no longer be written. */
+        boolean changed(Change change, Task task) throws IOException;
+    }
+
+    private final Path snapshotPath;
+    private final TaskLog log;
+    private final TaskFilter filter;
+    private TaskStore view;
+    private Object snapshotKey;
+    private long snapshotModified;
+    private byte[] records; // record section of a binary snapshot, as last read
+    private long logOffset;
+
+    public TaskWatcher(Path snapshotPath, TaskFilter filter) {
+        this.snapshotPath = snapshotPath;
+        this.log = new TaskLog(snapshotPath);
+        this.filter = filter;
+    }
+
+    /** Loads the store and returns the tasks currently matching the filter. */
+    public List<Task> start() throws IOException {
+        try (StoreLock lock = StoreLock.acquire(snapshotPath, true)) {
+            view = load();
+        }
+        return view.list(filter);
+    }
+
+    /** Passes changes to the listener until it returns false or the thread is interrupted. */
+    public void watch(Listener listener) throws IOException {
+        Path directory = snapshotPath.toAbsolutePath().getParent();
+        String snapshotName = snapshotPath.getFileName().toString();
+
+        try (WatchService service = directory.getFileSystem().newWatchService()) {
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            while (true) {
+                WatchKey key = service.poll(POLL_SECONDS, TimeUnit.SECONDS);
+                boolean snapshotTouched = false;
+                // Drain the burst of events a single command causes, then refresh once
+                while (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        Object name = event.context();
+                        snapshotTouched |= name == null || name.toString().equals(snapshotName);
+                    }
+                    key.reset();
+                    key = service.poll();
+                }
+                try (StoreLock lock = StoreLock.acquire(snapshotPath, true)) {
+                    if (!refresh(snapshotTouched, listener)) {
+                        return;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Reports what changed since the last refresh. Returns false once the listener asks to stop. */
+    private boolean refresh(boolean snapshotTouched, Listener listener) throws IOException {
+        BasicFileAttributes attributes = Files.exists(snapshotPath)
+                ? Files.readAttributes(snapshotPath, BasicFileAttributes.class) : null;
+        Object key = attributes != null ? attributes.fileKey() : null;
+        long modified = attributes != null ? attributes.lastModifiedTime().toMillis() : 0;
+
+        if (!Objects.equals(key, snapshotKey) || log.size() < logOffset) {
+            // Replaced: the new snapshot already holds what the old log said
+            TaskStore old = view;
+            view = load();
+            for (Task task : old.list(new TaskFilter())) {
+                Task current = view.get(task.getId());
+                if (!report(task, current, listener)) {
+                    return false;
+                }
+            }
+            for (Task task : view.list(new TaskFilter())) {
+                if (old.get(task.getId()) == null && !report(null, task, listener)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        if (records != null && (snapshotTouched || modified != snapshotModified)) {
+            int[] changed = TaskBinaryFormat.updateRecords(snapshotPath, records);
+            if (changed == null) {
+                records = TaskBinaryFormat.records(snapshotPath);
+            } else {
+                // Patches only touch tasks the log does not, so the records are current for them
+                for (Task task : TaskBinaryFormat.findAll(snapshotPath, changed)) {
+                    if (!apply(task.getId(), TaskLog.added(task), listener)) {
+                        return false;
+                    }
+                }
+            }
+            snapshotModified = modified;
+        }
+
+        for (String record : readLog()) {
+            if (!apply(Integer.parseInt(record.split("\t", 3)[1]), record, listener)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private TaskStore load() throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        records = null;
+        snapshotKey = null;
+        if (Files.exists(snapshotPath)) {
+            BasicFileAttributes attributes = Files.readAttributes(snapshotPath, BasicFileAttributes.class);
+            snapshotKey = attributes.fileKey();
+            snapshotModified = attributes.lastModifiedTime().toMillis();
+            if (TaskBinaryFormat.isBinary(snapshotPath)) {
+                tasks = new ArrayList<>(TaskBinaryFormat.read(snapshotPath));
+                records = TaskBinaryFormat.records(snapshotPath);
+            } else {
+                tasks = TaskJsonLoader.readAll(snapshotPath);
+            }
+        }
+        TaskStore store = new TaskStore(snapshotPath, tasks, 1);
+        logOffset = 0;
+        for (String record : readLog()) {
+            store.apply(record);
+        }
+        return store;
+    }
+
+    /** Complete records appended to the log since the last read. */
+    private List<String> readLog() throws IOException {
+        List<String> records = new ArrayList<>();
+        if (!Files.exists(log.getPath())) {
+            return records;
+        }
+
+        try (FileChannel channel = FileChannel.open(log.getPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= logOffset) {
+                return records;
+            }
+            ByteBuffer bytes = ByteBuffer.allocate((int) (size - logOffset));
+            while (bytes.hasRemaining() && channel.read(bytes, logOffset + bytes.position()) > 0) {
+                // read until full
+            }
+            int end = bytes.position();
+            while (end > 0 && bytes.get(end - 1) != '\n') {
+                end--; // a torn or unfinished last line is read next time
+            }
+            String content = new String(bytes.array(), 0, end, StandardCharsets.UTF_8);
+            for (String line : content.split("\n")) {
+                if (!line.isEmpty()) {
+                    records.add(line);
+                }
+            }
+            logOffset += end;
+        }
+        return records;
+    }
+
+    private boolean apply(int id, String record, Listener listener) throws IOException {
+        Task before = view.get(id);
+        before = before != null ? before.copy() : null;
+        try {
+            view.apply(record);
+        } catch (RuntimeException e) {
+            System.err.println("Warning: Could not apply log record: " + record);
+            return true;
+        }
+        return report(before, view.get(id), listener);
+    }
+
+    private boolean report(Task before, Task after, Listener listener) throws IOException {
+        boolean matched = before != null && filter.matches(before);
+        boolean matches = after != null && filter.matches(after);
+        if (matches && !matched) {
+            return listener.changed(Change.ADDED, after);
+        } else if (matches && !same(before, after)) {
+            return listener.changed(Change.UPDATED, after);
+        } else if (matched && !matches) {
+            return listener.changed(Change.REMOVED, after != null ? after : before);
+        }
+        return true;
+    }
+
+    private static boolean same(Task a, Task b) {
+        return a.getStatus() == b.getStatus() && a.getPriority() == b.getPriority()
+                && a.getCreatedAt() == b.getCreatedAt() && a.getUpdatedAt() == b.getUpdatedAt()
+                && Arrays.equals(a.getDescriptionUtf8(), b.getDescriptionUtf8());
+    }
+}
@@ -0,0 +1,143 @@
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Record ordinals sorted by createdAt and by updatedAt.
+ *
+ * Stored in binary snapshots so that a time-range filter can binary-search
+ * the permutation, reading only the timestamps it probes, instead of
+ * checking every record. Tasks are appended with increasing IDs and
+ * creation times, so the createdAt order is usually the identity and costs
+ * nothing to build.
+ *
+ * Patching a record's updatedAt in place (version 5) can break the updatedAt
+ * order, so the patch first stores the count complemented; readers then scan
+ * for updatedAt ranges until the snapshot is rewritten.
+ */
+public class TimeIndex {
+    private final int[] byCreated;
+    private final int[] byUpdated;
+
+    private TimeIndex(int[] byCreated, int[] byUpdated) {
+        this.byCreated = byCreated;
+        this.byUpdated = byUpdated;
+    }
+
+    public static TimeIndex build(List<Task> tasks) {
+        long[] created = new long[tasks.size()];
+        long[] updated = new long[tasks.size()];
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            created[i] = task.getCreatedAt();
+            updated[i] = task.getUpdatedAt();
+        }
+        return new TimeIndex(sortedOrdinals(created), sortedOrdinals(updated));
+    }
+
+    public int sizeInBytes() {
+        return 4 + byCreated.length * 8;
+    }
+
+    /** Writes the record count followed by both permutations. */
+    public void write(ByteBuffer buffer) {
+        buffer.putInt(byCreated.length);
+        for (int ordinal : byCreated) buffer.putInt(ordinal);
+        for (int ordinal : byUpdated) buffer.putInt(ordinal);
+    }
+
+    /** Size of an index written at the given offset. */
+    public static int storedSize(ByteBuffer buffer, int offset) {
+        return 4 + count(buffer, offset) * 8;
+    }
+
+    /** Returns false once a patch has marked the updatedAt order as stale. */
+    public static boolean hasUpdatedOrder(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset) >= 0;
+    }
+
+    /** Count word that marks the updatedAt order of the index at offset as stale. */
+    public static int staleCountWord(ByteBuffer buffer, int offset) {
+        return ~count(buffer, offset);
+    }
+
+    /**
+     * Returns the ordinals whose timestamp lies in [from, to], using the
+     * createdAt or updatedAt permutation stored at offset. timestampOf reads
+     * the matching field of a record. The updatedAt permutation is only valid
+     * while {@link #hasUpdatedOrder} holds.
+     */
+    public static BitSet range(ByteBuffer buffer, int offset, boolean updated, long from, long to,
+                               IntToLongFunction timestampOf) {
+        int count = count(buffer, offset);
+        int permutation = offset + 4 + (updated ? count * 4 : 0);
+
+        int first = lowerBound(buffer, permutation, count, from, timestampOf);
+        int last = to == Long.MAX_VALUE ? count : lowerBound(buffer, permutation, count, to + 1, timestampOf);
+
+        BitSet result = new BitSet(count);
+        for (int i = first; i < last; i++) {
+            result.set(buffer.getInt(permutation + i * 4));
+        }
+        return result;
+    }
+
+    private static int count(ByteBuffer buffer, int offset) {
+        int word = buffer.getInt(offset);
+        return word >= 0 ? word : ~word;
+    }
+
+    /** First position in the permutation whose timestamp is not less than key. */
+    private static int lowerBound(ByteBuffer buffer, int permutation, int count, long key, IntToLongFunction timestampOf) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestampOf.applyAsLong(buffer.getInt(permutation + mid * 4)) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Ordinals in ascending key order, ties in ordinal order. Each key is
+     * packed above its ordinal in one long and the longs sorted, so the sort
+     * compares primitives instead of boxed ordinals through a comparator.
+     */
+    private static int[] sortedOrdinals(long[] keys) {
+        int[] ordinals = new int[keys.length];
+        boolean sorted = true;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < keys.length; i++) {
+            ordinals[i] = i;
+            sorted &= i == 0 || keys[i - 1] <= keys[i];
+            min = Math.min(min, keys[i]);
+            max = Math.max(max, keys[i]);
+        }
+        if (sorted) {
+            return ordinals;
+        }
+
+        // Keys spanning more than 32 bits (e.g. a missing timestamp) are replaced by their rank
+        long[] ranks = null;
+        if (max - min < 0 || max - min > 0xFFFFFFFFL) {
+            ranks = keys.clone();
+            Arrays.sort(ranks);
+            min = 0;
+        }
+        long[] packed = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            long key = ranks != null ? Arrays.binarySearch(ranks, keys[i]) : keys[i] - min;
+            packed[i] = (key + Integer.MIN_VALUE) << 32 | i;
+        }
+        Arrays.sort(packed);
+        for (int i = 0; i < keys.length; i++) {
+            ordinals[i] = (int) packed[i];
+        }
+        return ordinals;
+    }
+}